@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2007-, the localizer project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.localizer.benchmark;
+
+import org.jvnet.localizer.ResourceProvider;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Owner class of the synthetic bundles that the benchmarks use,
+ * and the code that writes those bundles out.
+ *
+ * <p>
+ * Each bundle has {@code size} keys; a third of them take no argument, a third take one,
+ * and a third take five. Translations are written for each level of the fallback chain
+ * of {@link #LOCALE}, up to the given depth, and each translation overrides half the keys
+ * of its parent, so that lookups exercise the fallback.
+ */
+public class Fixture {
+    /**
+     * Locale that the benchmarks format messages in, which falls back to {@code de_AT}, {@code de}, then the root locale.
+     */
+    public static final Locale LOCALE = new Locale("de", "AT", "Wien");
+
+    private static final String[] SUFFIXES = {"", "_de", "_de_AT", "_de_AT_Wien"};
+
+    /**
+     * Key of the {@code i}-th message that takes the given number of arguments.
+     */
+    public static String key(int args, int i) {
+        return "message" + args + "_" + i;
+    }
+
+    /**
+     * Writes {@code Fixture*.properties} to the given directory.
+     *
+     * @param depth
+     *      Number of bundles in the fallback chain of {@link #LOCALE}, from 1 (just the root bundle) to 4.
+     */
+    public static void write(File dir, int size, int depth) throws IOException {
+        dir.mkdirs();
+        for (int d = 0; d < depth; d++) {
+            Properties props = new Properties();
+            for (int i = 0; i < size / 3; i++) {
+                // the root bundle has all the keys, each translation overrides a half of its parent
+                if ((i % (1 << d)) != 0)
+                    continue;
+                props.setProperty(key(0, i), "Plain message number " + i + " in" + SUFFIXES[d]);
+                props.setProperty(key(1, i), "Message " + i + " about {0} in" + SUFFIXES[d]);
+                props.setProperty(key(5, i), "Message " + i + " with {0}, {1}, {2}, {3} and {4} in" + SUFFIXES[d]);
+            }
+            OutputStream out = new FileOutputStream(new File(dir, Fixture.class.getSimpleName() + SUFFIXES[d] + ".properties"));
+            try {
+                props.store(out, null);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * {@link ResourceProvider} that serves resources of {@link Fixture} from the given directory.
+     */
+    public static ResourceProvider provider(final File dir) {
+        return new ResourceProvider() {
+            @Override
+            public URL getResource(String name, Class<?> resourceBundle) {
+                if (resourceBundle != Fixture.class)
+                    return ResourceProvider.DEFAULT.getResource(name, resourceBundle);
+                File f = new File(dir, name);
+                try {
+                    return f.exists() ? f.toURI().toURL() : null;
+                } catch (MalformedURLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates a temporary directory for the fixture.
+     */
+    public static File createTempDir() throws IOException {
+        File dir = File.createTempFile("localizer", "benchmark");
+        dir.delete();
+        dir.mkdirs();
+        return dir;
+    }
+
+    /**
+     * Deletes what {@link #createTempDir()} created.
+     */
+    public static void delete(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null)
+            for (File f : files)
+                f.delete();
+        dir.delete();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2007-, the localizer project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.localizer.benchmark;
+
+import org.jvnet.localizer.LocaleProvider;
+import org.jvnet.localizer.ResourceBundleHolder;
+import org.jvnet.localizer.ResourceProvider;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Writes out the {@link Fixture} bundles and installs the providers that the benchmarks need.
+ */
+@State(Scope.Benchmark)
+public class FixtureState {
+    /**
+     * Number of keys in each bundle.
+     */
+    @Param({"30", "300", "3000"})
+    public int size;
+
+    /**
+     * Number of bundles in the fallback chain of {@link Fixture#LOCALE}.
+     */
+    @Param({"1", "4"})
+    public int depth;
+
+    private File dir;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Fixture.createTempDir();
+        Fixture.write(dir, size, depth);
+        ResourceProvider.setProvider(Fixture.provider(dir));
+        LocaleProvider.setProvider(new LocaleProvider() {
+            @Override
+            public Locale get() {
+                return Fixture.LOCALE;
+            }
+        });
+        ResourceBundleHolder.clearCache();
+    }
+
+    @TearDown
+    public void tearDown() {
+        ResourceProvider.setProvider(ResourceProvider.DEFAULT);
+        LocaleProvider.setProvider(LocaleProvider.DEFAULT);
+        ResourceBundleHolder.clearCache();
+        Fixture.delete(dir);
+    }
+}
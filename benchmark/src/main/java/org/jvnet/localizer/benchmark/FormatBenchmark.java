@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2007-, the localizer project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.localizer.benchmark;
+
+import org.jvnet.localizer.Localizable;
+import org.jvnet.localizer.ResourceBundleHolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting messages from a holder whose bundles are already loaded.
+ *
+ * <p>
+ * The keys are only defined in the root bundle, so with a deeper fallback chain
+ * the lookups have to go through all the translations first.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatBenchmark {
+    private ResourceBundleHolder holder;
+    private String key0, key1, key5;
+
+    @Setup
+    public void setUp(FixtureState fixture) {
+        holder = ResourceBundleHolder.get(Fixture.class);
+        key0 = Fixture.key(0, 1);
+        key1 = Fixture.key(1, 1);
+        key5 = Fixture.key(5, 1);
+        holder.indexKeys(key1);
+        holder.get(Fixture.LOCALE);
+    }
+
+    @Benchmark
+    public String format0() {
+        return holder.format(key0);
+    }
+
+    @Benchmark
+    public String format1() {
+        return holder.format(key1, "world");
+    }
+
+    @Benchmark
+    public String format1ByOrdinal() {
+        return holder.format(0, "world");
+    }
+
+    @Benchmark
+    public String format5() {
+        return holder.format(key5, "one", "two", 3, "four", 5);
+    }
+
+    @Benchmark
+    public String localizable() {
+        return new Localizable(holder, key1, "world").toString(Fixture.LOCALE);
+    }
+}
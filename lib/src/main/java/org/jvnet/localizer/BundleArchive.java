@@ -0,0 +1,258 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2007-, the localizer project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.localizer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * All the resource bundles of an artifact, packed into one file, so that loading them doesn't need
+ * a class loader lookup and a {@link java.net.URLConnection} for each holder and locale.
+ *
+ * <p>
+ * The file is {@link #RESOURCE}, written by the generator when asked to. It consists of:
+ * <pre>
+ * int      magic ('L','Z','B','A')
+ * int      version (1)
+ * int      number of entries
+ * entries: UTF      resource name, such as "org/acme/Messages_de.properties"
+ *          int      offset of the data, from the end of the entries
+ *          int      length of the data
+ * data:    the resource files, as they are
+ * </pre>
+ *
+ * <p>
+ * The archives visible from a class loader are merged into one {@link BundleArchive}.
+ * When the same resource is in more than one, the first one wins, just like {@link ClassLoader#getResource(String)}.
+ *
+ * <p>
+ * A resource in an archive also wins over a loose resource of the same name, even if the latter comes first
+ * in the class path, since the point is not to ask the class loader. So to override a bundle with a jar
+ * that comes earlier, such as a patched translation, that jar needs an archive of its own, or the bundle
+ * needs to be left out of the archive. Resources that aren't in any archive are looked for as usual.
+ */
+public final class BundleArchive {
+    private static final class Entry {
+        final URL archive;
+        final ByteBuffer data;
+
+        Entry(URL archive, ByteBuffer data) {
+            this.archive = archive;
+            this.data = data;
+        }
+    }
+
+    private final Map<String,Entry> entries;
+
+    private BundleArchive(Map<String,Entry> entries) {
+        this.entries = entries;
+    }
+
+    boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    /**
+     * Opens the given resource, or returns null if it's not in the archive.
+     */
+    InputStream open(String name) {
+        Entry e = entries.get(name);
+        if (e==null)    return null;
+        return new ByteBufferInputStream(e.data.duplicate());
+    }
+
+    /**
+     * The archive file that the given resource comes from.
+     */
+    URL getSource(String name) {
+        Entry e = entries.get(name);
+        return e!=null ? e.archive : null;
+    }
+
+    /**
+     * Gets all the archives visible from the given class loader, merged into one.
+     */
+    static BundleArchive of(ClassLoader cl) throws IOException {
+        synchronized (archives) {
+            BundleArchive a = archives.get(cl);
+            if (a!=null)    return a;
+        }
+
+        // load outside the lock. if two threads race, they just end up with equivalent archives
+        Map<String,Entry> entries = new HashMap<String,Entry>();
+        Enumeration<URL> e = cl.getResources(RESOURCE);
+        while (e.hasMoreElements())
+            read(e.nextElement(), entries);
+        BundleArchive a = entries.isEmpty() ? EMPTY : new BundleArchive(entries);
+
+        synchronized (archives) {
+            archives.put(cl,a);
+        }
+        return a;
+    }
+
+    static void clearCache() {
+        synchronized (archives) {
+            archives.clear();
+        }
+    }
+
+    private static void read(URL url, Map<String,Entry> entries) throws IOException {
+        ByteBuffer buf = map(url);
+
+        if (buf.getInt()!=MAGIC)
+            throw new IOException(url+" is not a bundle archive");
+        int version = buf.getInt();
+        if (version!=VERSION)
+            throw new IOException(url+" has unsupported version "+version);
+
+        int n = buf.getInt();
+        String[] names = new String[n];
+        int[] offsets = new int[n];
+        int[] lengths = new int[n];
+        DataInputStream in = new DataInputStream(new ByteBufferInputStream(buf));
+        for (int i=0; i<n; i++) {
+            names[i] = in.readUTF();
+            offsets[i] = in.readInt();
+            lengths[i] = in.readInt();
+        }
+
+        int start = buf.position();
+        for (int i=0; i<n; i++) {
+            if (entries.containsKey(names[i]))
+                continue;
+            ByteBuffer data = buf.duplicate();
+            data.position(start+offsets[i]);
+            data.limit(start+offsets[i]+lengths[i]);
+            entries.put(names[i], new Entry(url, data.slice()));
+        }
+    }
+
+    /**
+     * Memory-maps the archive if it's a file, or else reads it fully into memory.
+     */
+    private static ByteBuffer map(URL url) throws IOException {
+        if (url.getProtocol().equals("file")) {
+            try {
+                RandomAccessFile f = new RandomAccessFile(new File(url.toURI()), "r");
+                try {
+                    return f.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, f.length());
+                } finally {
+                    f.close();
+                }
+            } catch (URISyntaxException e) {
+                // fall through and read it like any other URL
+            }
+        }
+
+        InputStream in = url.openStream();
+        try {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            byte[] b = new byte[8192];
+            int n;
+            while ((n=in.read(b))>=0)
+                buf.write(b,0,n);
+            return ByteBuffer.wrap(buf.toByteArray());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes an archive.
+     *
+     * @param resources
+     *      Resource files keyed by their resource names, like "org/acme/Messages_de.properties".
+     */
+    public static void write(Map<String,byte[]> resources, OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(os);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(resources.size());
+        int offset = 0;
+        for (Map.Entry<String,byte[]> e : resources.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeInt(offset);
+            out.writeInt(e.getValue().length);
+            offset += e.getValue().length;
+        }
+        for (byte[] data : resources.values())
+            out.write(data);
+        out.flush();
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+
+        ByteBufferInputStream(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read() {
+            return buf.hasRemaining() ? buf.get()&0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len==0)     return 0;
+            if (!buf.hasRemaining())    return -1;
+            len = Math.min(len, buf.remaining());
+            buf.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() {
+            return buf.remaining();
+        }
+    }
+
+    /**
+     * Name of the archive resource.
+     */
+    public static final String RESOURCE = "META-INF/localizer/bundles.bin";
+
+    private static final int MAGIC = 0x4C5A4241;
+    private static final int VERSION = 1;
+
+    static final BundleArchive EMPTY = new BundleArchive(Collections.<String,Entry>emptyMap());
+
+    private static final Map<ClassLoader,BundleArchive> archives = new WeakHashMap<ClassLoader,BundleArchive>();
+}
@@ -0,0 +1,107 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2007-, the localizer project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.localizer;
+
+import java.util.Locale;
+
+/**
+ * How much memory the bundle of one {@link ResourceBundleHolder} in one locale takes.
+ *
+ * @see ResourceBundleHolder#getFootprint()
+ * @see ResourceBundleHolder#getTotalFootprint()
+ */
+public final class BundleFootprint {
+    private final Class<?> owner;
+    private final Locale locale;
+    private final Locale aliasOf;
+    private final int keyCount;
+    private final long estimatedBytes;
+    private final long lastUsed;
+
+    BundleFootprint(Class<?> owner, Locale locale, Locale aliasOf, int keyCount, long estimatedBytes, long lastUsed) {
+        this.owner = owner;
+        this.locale = locale;
+        this.aliasOf = aliasOf;
+        this.keyCount = keyCount;
+        this.estimatedBytes = estimatedBytes;
+        this.lastUsed = lastUsed;
+    }
+
+    /**
+     * The class that the holder is for.
+     */
+    public Class<?> getOwner() {
+        return owner;
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * True if the locale has no resources of its own, and just uses the bundle of {@link #getAliasOf()}.
+     */
+    public boolean isAlias() {
+        return aliasOf!=null;
+    }
+
+    /**
+     * The locale whose bundle is used for this one, or null if this is a real bundle.
+     */
+    public Locale getAliasOf() {
+        return aliasOf;
+    }
+
+    /**
+     * Number of keys in the bundle itself, not counting those inherited from the parent locale.
+     * 0 for an alias.
+     */
+    public int getKeyCount() {
+        return keyCount;
+    }
+
+    /**
+     * Rough estimate of the memory taken by the keys and messages of the bundle, and the table that holds them.
+     * Strings shared with other bundles are counted in each.
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * When the bundle was last used, in {@link System#currentTimeMillis()}.
+     * This is only tracked while {@link ResourceBundleHolder#setCacheLimit(int) a cache limit} is in effect,
+     * so that the lookups don't pay for it otherwise, and it's -1 if it's not. Also -1 for an alias.
+     */
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    @Override
+    public String toString() {
+        return owner.getName()+'\t'+(locale.toString().length()>0 ? locale : "(root)")+'\t'
+                +(aliasOf!=null ? "alias of "+(aliasOf.toString().length()>0 ? aliasOf : "(root)") : "bundle")+'\t'
+                +keyCount+'\t'+estimatedBytes+'\t'+lastUsed;
+    }
+}
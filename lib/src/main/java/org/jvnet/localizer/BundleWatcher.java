@@ -0,0 +1,140 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2007-, the localizer project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.localizer;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches the directories that resource files were loaded from, and tells the holders
+ * that loaded them when they change, so that they load them again.
+ *
+ * @see ResourceBundleHolder#setReloading(boolean)
+ */
+final class BundleWatcher implements Runnable {
+    private final WatchService service;
+
+    /**
+     * Holders that loaded files from each watched directory.
+     * Weak, so that watching doesn't keep class loaders alive.
+     */
+    private final Map<WatchKey,Set<ResourceBundleHolder>> holders = new HashMap<WatchKey,Set<ResourceBundleHolder>>();
+
+    BundleWatcher() throws IOException {
+        service = FileSystems.getDefault().newWatchService();
+        Thread thread = new Thread(this, "Localizer bundle watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Starts watching the directory of the given resource, if it's a file.
+     */
+    void watch(ResourceBundleHolder holder, URL res) {
+        if (!res.getProtocol().equals("file"))
+            return;
+        try {
+            Path dir = Paths.get(res.toURI()).getParent();
+            WatchKey key = dir.register(service, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            synchronized (holders) {
+                Set<ResourceBundleHolder> s = holders.get(key);
+                if (s==null)
+                    holders.put(key, s = Collections.newSetFromMap(new WeakHashMap<ResourceBundleHolder,Boolean>()));
+                s.add(holder);
+            }
+        } catch (IOException e) {
+            // then it just won't be reloaded
+        } catch (URISyntaxException e) {
+            // ditto
+        } catch (FileSystemNotFoundException e) {
+            // ditto
+        } catch (ClosedWatchServiceException e) {
+            // reloading has just been turned off
+        }
+    }
+
+    public void run() {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                List<ResourceBundleHolder> affected;
+                synchronized (holders) {
+                    Set<ResourceBundleHolder> s = holders.get(key);
+                    affected = s!=null ? new ArrayList<ResourceBundleHolder>(s) : Collections.<ResourceBundleHolder>emptyList();
+                }
+
+                for (WatchEvent<?> e : key.pollEvents()) {
+                    for (ResourceBundleHolder h : affected) {
+                        // one failure shouldn't stop the reloading for good
+                        try {
+                            if (e.kind()==OVERFLOW)
+                                h.reload(null);     // we don't know what changed
+                            else
+                                h.reload(e.context().toString());
+                        } catch (RuntimeException x) {
+                            LOGGER.log(Level.WARNING, "Failed to reload the resources of "+h.owner.getName(), x);
+                        }
+                    }
+                }
+
+                if (!key.reset()) {
+                    // the directory is gone
+                    synchronized (holders) {
+                        holders.remove(key);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // shutting down
+        } catch (ClosedWatchServiceException e) {
+            // shutting down
+        }
+    }
+
+    void close() throws IOException {
+        service.close();
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(BundleWatcher.class.getName());
+}
@@ -0,0 +1,44 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2007-, the localizer project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.localizer;
+
+/**
+ * Receives the outcome of an asynchronous operation, such as {@link ResourceBundleHolder#getAsync(java.util.Locale, java.util.concurrent.Executor, Callback)}.
+ *
+ * <p>
+ * This is called exactly once, either on the thread that completed the operation,
+ * or right away on the calling thread if the result is already available.
+ *
+ * @param <T>
+ *      Type of the result.
+ */
+public interface Callback<T> {
+    /**
+     * @param result
+     *      The result, or null if the operation failed.
+     * @param failure
+     *      Why the operation failed, such as {@link java.util.MissingResourceException}, or null if it succeeded.
+     */
+    void done(T result, Throwable failure);
+}
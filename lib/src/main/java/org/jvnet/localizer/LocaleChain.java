@@ -0,0 +1,117 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2007-, the localizer project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.localizer;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Fallback chain of a {@link Locale}, like {@code de_AT_Wien -> de_AT -> de -> (root)}.
+ *
+ * <p>
+ * Chains are computed once per locale and shared by all the {@link ResourceBundleHolder}s,
+ * so that loading the same locale for many holders doesn't recompute them.
+ * Requested locales can come from clients, so only so many of them are remembered;
+ * the chains of the rest are computed every time, which is still cheap.
+ */
+final class LocaleChain {
+    /**
+     * The locale at this level of the chain.
+     */
+    final Locale locale;
+
+    /**
+     * What gets appended to the base name of a bundle for this locale, such as "_de_AT".
+     * Empty for the root locale.
+     */
+    final String suffix;
+
+    /**
+     * The locale to fall back to, or null if this is the root locale.
+     */
+    final LocaleChain parent;
+
+    private LocaleChain(Locale locale, LocaleChain parent) {
+        this.locale = locale;
+        String s = locale.toString();
+        this.suffix = s.length()>0 ? '_'+s : "";
+        this.parent = parent;
+    }
+
+    /**
+     * Gets the chain for the given locale.
+     */
+    static LocaleChain of(Locale locale) {
+        LocaleChain c = chains.get(locale);
+        if (c!=null)    return c;
+
+        Locale base = getBaseLocale(locale);
+        c = new LocaleChain(locale, base!=null ? of(base) : null);
+        if (chains.size()>=MAX_CHAINS)
+            return c;
+        LocaleChain prev = chains.putIfAbsent(locale,c);
+        return prev!=null ? prev : c;
+    }
+
+    /**
+     * Returns the locale to fall back to.
+     */
+    private static Locale getBaseLocale(Locale l) {
+        if (l.getVariant().length() > 0)
+            return new Locale(l.getLanguage(), l.getCountry());
+        if (l.getCountry().length() > 0)
+            return new Locale(l.getLanguage());
+        if (l.getLanguage().length()>0)
+            return ROOT;
+        return null;
+    }
+
+    /**
+     * Whether the given chain goes through the locale of this one, including when it's the same locale.
+     *
+     * @param c
+     *      Can be null.
+     */
+    boolean isFallbackOf(LocaleChain c) {
+        for (; c!=null; c=c.parent)
+            if (c.suffix.equals(suffix))
+                return true;
+        return false;
+    }
+
+        @Override
+    public String toString() {
+        return parent!=null ? locale+" -> "+parent : "(root)";
+    }
+
+    /**
+     * {@link Locale} object that corresponds to the base bundle.
+     */
+    static final Locale ROOT = new Locale("");
+
+    private static final int MAX_CHAINS = 4096;
+
+    private static final ConcurrentMap<Locale,LocaleChain> chains = new ConcurrentHashMap<Locale,LocaleChain>();
+}
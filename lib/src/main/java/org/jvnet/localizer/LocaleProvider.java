@@ -24,6 +24,7 @@
 package org.jvnet.localizer;
 
 import java.util.Locale;
+import java.util.concurrent.Callable;
 
 /**
  * Determines the locale, normally from the context.
@@ -36,6 +37,11 @@ import java.util.Locale;
  * A single instance of {@link LocaleProvider} is maintained in this class
  * for the use by {@link ResourceBundleHolder}. 
  *
+ * <p>
+ * Alternatively, the locale can be set for a piece of code with {@link #runWith(Locale, Runnable)}
+ * and {@link #callWith(Locale, Callable)}, which take precedence over the installed provider
+ * in the thread that runs it.
+ *
  * @author Kohsuke Kawaguchi
  */
 public abstract class LocaleProvider {
@@ -62,12 +68,88 @@ public abstract class LocaleProvider {
     }
 
     /**
-     * Short for {@code getProvider().get()}
+     * Short for {@code getProvider().get()}, unless the current thread is in {@link #runWith(Locale, Runnable)}
+     * or {@link #callWith(Locale, Callable)}, in which case it's the locale given to them.
      */
     public static Locale getLocale() {
+        if (scopesUsed) {
+            Locale l = scoped.get();
+            if (l!=null)    return l;
+        }
         return theInstance.get();
     }
 
+    /**
+     * Runs the given task with {@link #getLocale()} returning the given locale in this thread,
+     * for example while handling a request. The previous locale is restored afterward,
+     * so nothing is left behind in pooled threads.
+     *
+     * <p>
+     * Other threads are not affected, including those that the task starts or hands work to.
+     * Use {@link #wrap(Runnable)} to carry the locale over to them.
+     */
+    public static void runWith(Locale locale, Runnable task) {
+        Locale old = enter(locale);
+        try {
+            task.run();
+        } finally {
+            exit(old);
+        }
+    }
+
+    /**
+     * {@link #runWith(Locale, Runnable)} for a task that returns a value.
+     */
+    public static <T> T callWith(Locale locale, Callable<T> task) throws Exception {
+        Locale old = enter(locale);
+        try {
+            return task.call();
+        } finally {
+            exit(old);
+        }
+    }
+
+    /**
+     * Wraps the given task so that it runs with the current {@link #getLocale()},
+     * whichever thread it runs in.
+     */
+    public static Runnable wrap(final Runnable task) {
+        final Locale locale = getLocale();
+        return new Runnable() {
+            public void run() {
+                runWith(locale, task);
+            }
+        };
+    }
+
+    /**
+     * Wraps the given task so that it runs with the current {@link #getLocale()},
+     * whichever thread it runs in.
+     */
+    public static <T> Callable<T> wrap(final Callable<T> task) {
+        final Locale locale = getLocale();
+        return new Callable<T>() {
+            public T call() throws Exception {
+                return callWith(locale, task);
+            }
+        };
+    }
+
+    private static Locale enter(Locale locale) {
+        if (locale==null)   throw new IllegalArgumentException();
+        scopesUsed = true;
+        Locale old = scoped.get();
+        scoped.set(locale);
+        return old;
+    }
+
+    private static void exit(Locale old) {
+        if (old==null)
+            scoped.remove();
+        else
+            scoped.set(old);
+    }
+
     /**
      * {@link LocaleProvider} that uses {@link Locale#getDefault()}.
      */
@@ -78,4 +160,15 @@ public abstract class LocaleProvider {
     };
 
     private static volatile LocaleProvider theInstance = DEFAULT;
+
+    /**
+     * Locale given to {@link #runWith(Locale, Runnable)} and the like that the current thread is in, if any.
+     */
+    private static final ThreadLocal<Locale> scoped = new ThreadLocal<Locale>();
+
+    /**
+     * Set once {@link #scoped} is first used, so that until then {@link #getLocale()}
+     * doesn't need to look up the thread local. Never goes back to false.
+     */
+    private static volatile boolean scopesUsed;
 }
@@ -0,0 +1,150 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2007-, the localizer project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.localizer;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * What a {@link ResourceBundleHolder} knows about which locales have resources,
+ * used to map any requested locale to the nearest one that has a bundle of its own,
+ * like {@code en_US_POSIX -> en} if there's only "Messages_en.properties".
+ *
+ * <p>
+ * This is immutable except for the memo of resolved locales. When a holder learns something new,
+ * it switches to another instance. Instances are interned, so that all the holders that know
+ * the same things, which is typical for the holders of one library, share one memo.
+ */
+final class LocaleResolution {
+    /**
+     * The {@link ResourceProvider#generation} that this knowledge is valid for.
+     */
+    final int generation;
+    /**
+     * {@link LocaleChain#suffix}es of the locales that have resources.
+     */
+    private final Set<String> present;
+    /**
+     * {@link LocaleChain#suffix}es of the locales that are known not to have resources.
+     */
+    private final Set<String> absent;
+    /**
+     * Strong reference to the key in {@link #instances}, to keep it as long as this instance is used.
+     */
+    private final List<Object> key;
+    /**
+     * Requested locale to the locale that has the bundle.
+     */
+    private final ConcurrentMap<Locale,Locale> resolved = new ConcurrentHashMap<Locale,Locale>();
+
+    private LocaleResolution(List<Object> key, int generation, Set<String> present, Set<String> absent) {
+        this.key = key;
+        this.generation = generation;
+        this.present = present;
+        this.absent = absent;
+    }
+
+    /**
+     * Finds the nearest locale in the fallback chain of the given one that has resources.
+     *
+     * @return
+     *      null if we don't know yet.
+     */
+    Locale resolve(Locale requested) {
+        Locale l = resolved.get(requested);
+        if (l!=null)    return l;
+
+        for (LocaleChain c=LocaleChain.of(requested); c!=null; c=c.parent) {
+            if (present.contains(c.suffix)) {
+                if (resolved.size()<MAX_RESOLVED)
+                    resolved.put(requested, c.locale);
+                return c.locale;
+            }
+            if (!absent.contains(c.suffix))
+                return null;
+        }
+        return null;
+    }
+
+    boolean isPresent(String suffix) {
+        return present.contains(suffix);
+    }
+
+    boolean isAbsent(String suffix) {
+        return absent.contains(suffix);
+    }
+
+    LocaleResolution withPresent(String suffix) {
+        if (present.contains(suffix))
+            return this;
+        Set<String> p = new HashSet<String>(present);
+        p.add(suffix);
+        return of(generation, p, absent);
+    }
+
+    LocaleResolution withAbsent(String suffix) {
+        // there can be any number of bogus locales, and we don't want to copy ever bigger sets for them.
+        // those beyond the limit are just looked for every time, which is cheap enough with ResourceBundleHolder's
+        // memory of missing resources.
+        if (absent.contains(suffix) || absent.size()>=MAX_ABSENT)
+            return this;
+        Set<String> a = new HashSet<String>(absent);
+        a.add(suffix);
+        return of(generation, present, a);
+    }
+
+    /**
+     * Gets the instance that knows nothing yet.
+     */
+    static LocaleResolution empty(int generation) {
+        return of(generation, Collections.<String>emptySet(), Collections.<String>emptySet());
+    }
+
+    private static LocaleResolution of(int generation, Set<String> present, Set<String> absent) {
+        List<Object> key = Arrays.<Object>asList(generation, present, absent);
+        synchronized (instances) {
+            WeakReference<LocaleResolution> ref = instances.get(key);
+            LocaleResolution r = ref!=null ? ref.get() : null;
+            if (r==null) {
+                r = new LocaleResolution(key, generation, Collections.unmodifiableSet(present), Collections.unmodifiableSet(absent));
+                instances.put(key, new WeakReference<LocaleResolution>(r));
+            }
+            return r;
+        }
+    }
+
+    private static final int MAX_ABSENT = 256;
+    private static final int MAX_RESOLVED = 4096;
+
+    private static final Map<List<Object>,WeakReference<LocaleResolution>> instances = new WeakHashMap<List<Object>,WeakReference<LocaleResolution>>();
+}
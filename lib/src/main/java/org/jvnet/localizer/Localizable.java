@@ -24,7 +24,11 @@
 package org.jvnet.localizer;
 
 import java.util.Locale;
-import java.text.MessageFormat;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.MissingResourceException;
 
@@ -37,25 +41,38 @@ import static java.util.Arrays.asList;
  * @author Kohsuke Kawaguchi
  */
 public class Localizable implements Serializable {
-    private final ResourceBundleHolder holder;
-    private final String key;
-    private final Serializable[] args;
+    private static final long serialVersionUID = 687922597467271798L;
 
+    /**
+     * The serialized form is the same as when these fields were all final and {@link #args} was {@code Serializable[]}.
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("holder", ResourceBundleHolder.class),
+        new ObjectStreamField("key", String.class),
+        new ObjectStreamField("args", Serializable[].class)
+    };
+
+    private ResourceBundleHolder holder;
+    private String key;
+    /**
+     * The arguments as given, which are only made {@link Serializable} when this object gets serialized,
+     * since most of these objects never are.
+     */
+    private Object[] args;
+
+    /**
+     * The last rendering, if {@link #setMemoizing(boolean) memoizing}.
+     */
+    private transient volatile Rendered rendered;
+
+    /**
+     * @param args
+     *      The array is kept as is, not copied, so don't modify it afterward.
+     */
     public Localizable(ResourceBundleHolder holder, String key, Object... args) {
         this.holder = holder;
         this.key = key;
-        this.args = new Serializable[args.length];
-        for (int i = 0; i < args.length; i++) {
-            if (args[i] instanceof Serializable) {
-                this.args[i] = (Serializable)args[i];
-            } else {
-                // MessageFormat only supports formats of "number", "date", "time" and "choice"
-                // All of which will be formatting objects that must be Serializable
-                // Anything else non-null will just have it's toString() method invoked
-                // by MessageFormat, so we'll just call toString up front.
-                this.args[i] = String.valueOf(args[i]);
-            }
-        }
+        this.args = args;
     }
 
     public String getKey() {
@@ -63,14 +80,235 @@ public class Localizable implements Serializable {
     }
 
     public String toString(Locale locale) {
+        if (!memoizing)
+            return format(locale);
+
+        Rendered r = rendered;
+        int version = holder.getVersion();
+        if (r!=null && r.version==version && r.locale.equals(locale))
+            return r.text;
+
+        String s = format(locale);
+        if (hasOnlyStringArgs())
+            rendered = new Rendered(locale, version, s);
+        return s;
+    }
+
+    private String format(Locale locale) {
         try {
-            return MessageFormat.format(holder.get(locale).getString(key),(Object[])args);
+            return holder.format(locale,key,args);
         } catch (MissingResourceException e) {
             throw new RuntimeException("Failed to localize key="+key+",args="+ asList(args),e);
         }
     }
 
+    /**
+     * Other arguments may render differently each time, for example if they're mutable,
+     * or formatted according to the default locale.
+     */
+    private boolean hasOnlyStringArgs() {
+        for (Object arg : args) {
+            if (arg!=null && !(arg instanceof String))
+                return false;
+        }
+        return true;
+    }
+
     public String toString() {
         return toString(LocaleProvider.getLocale());
     }
+
+    /**
+     * Formats this message in the given locale and writes it to the given {@link Appendable},
+     * without creating an intermediate {@link String}.
+     */
+    public void appendTo(Appendable out, Locale locale) throws IOException {
+        Rendered r = rendered;
+        if (memoizing && r!=null && r.version==holder.getVersion() && r.locale.equals(locale)) {
+            out.append(r.text);
+            return;
+        }
+        try {
+            holder.formatTo(out,locale,key,args);
+        } catch (MissingResourceException e) {
+            throw new RuntimeException("Failed to localize key="+key+",args="+ asList(args),e);
+        }
+    }
+
+    /**
+     * Short for {@code appendTo(out,LocaleProvider.getLocale())}.
+     */
+    public void appendTo(Appendable out) throws IOException {
+        appendTo(out,LocaleProvider.getLocale());
+    }
+
+    /**
+     * Turns on or off remembering how each {@link Localizable} was rendered the last time,
+     * so that rendering it again in the same locale just returns the same string.
+     * This helps when the same objects are rendered over and over, like in UI that refreshes.
+     *
+     * <p>
+     * Only those with {@link String} or null arguments are remembered, since other arguments might render
+     * differently next time. What's remembered is forgotten when the bundles of the holder are reloaded,
+     * and it's never serialized.
+     *
+     * <p>
+     * The initial value comes from the {@code org.jvnet.localizer.Localizable.memoize} system property.
+     */
+    public static void setMemoizing(boolean memoizing) {
+        Localizable.memoizing = memoizing;
+    }
+
+    private static volatile boolean memoizing = Boolean.getBoolean(Localizable.class.getName()+".memoize");
+
+    private static final class Rendered {
+        final Locale locale;
+        /**
+         * {@link ResourceBundleHolder#getVersion()} at the time of the rendering.
+         */
+        final int version;
+        final String text;
+
+        Rendered(Locale locale, int version, String text) {
+            this.locale = locale;
+            this.version = version;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Turns on or off writing {@link Localizable}s in a compact form, which is a fraction of the size
+     * of the usual one. The holder is written as a reference to the class it's for, and the common types
+     * of arguments are written without their class descriptors.
+     *
+     * <p>
+     * Both forms can be read by this version and later, but not by earlier versions,
+     * so only turn this on if everything that reads the objects is up to date.
+     *
+     * <p>
+     * The initial value comes from the {@code org.jvnet.localizer.Localizable.compactSerialization} system property.
+     */
+    public static void setCompactSerialization(boolean compact) {
+        Localizable.compact = compact;
+    }
+
+    private static volatile boolean compact = Boolean.getBoolean(Localizable.class.getName()+".compactSerialization");
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        if (!compact) {
+            fields.put("holder", holder);
+            fields.put("key", key);
+            fields.put("args", toSerializable(args));
+            out.writeFields();
+            return;
+        }
+
+        // the fields are left null, which tells readObject that the compact form follows
+        out.writeFields();
+        out.writeObject(holder!=null ? holder.owner : null);
+        out.writeObject(key);   // not writeUTF, so that the same key is written only once per stream
+        writeLength(out, args.length);
+        for (Object arg : args)
+            writeArg(out, arg);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        Serializable[] a = (Serializable[])fields.get("args", null);
+        if (a!=null) {
+            holder = (ResourceBundleHolder)fields.get("holder", null);
+            key = (String)fields.get("key", null);
+            args = a;
+            return;
+        }
+
+        Class<?> owner = (Class<?>)in.readObject();
+        holder = owner!=null ? ResourceBundleHolder.get(owner) : null;
+        key = (String)in.readObject();
+        a = new Serializable[readLength(in)];
+        for (int i = 0; i < a.length; i++)
+            a[i] = readArg(in);
+        args = a;
+    }
+
+    private static void writeLength(ObjectOutputStream out, int n) throws IOException {
+        if (n<0xFF) {
+            out.writeByte(n);
+        } else {
+            out.writeByte(0xFF);
+            out.writeInt(n);
+        }
+    }
+
+    private static int readLength(ObjectInputStream in) throws IOException {
+        int n = in.readUnsignedByte();
+        return n<0xFF ? n : in.readInt();
+    }
+
+    private static void writeArg(ObjectOutputStream out, Object arg) throws IOException {
+        if (arg==null) {
+            out.writeByte(NULL);
+        } else if (arg instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer)arg);
+        } else if (arg instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long)arg);
+        } else if (arg instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean)arg);
+        } else if (arg instanceof Serializable && !(arg instanceof String)) {
+            out.writeByte(OBJECT);
+            out.writeObject(arg);
+        } else {
+            // see toSerializable
+            String s = String.valueOf(arg);
+            if (s.length()>0xFFFF/3) {
+                // might not fit in writeUTF
+                out.writeByte(OBJECT);
+                out.writeObject(s);
+            } else {
+                out.writeByte(STRING);
+                out.writeUTF(s);
+            }
+        }
+    }
+
+    private static Serializable readArg(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        int tag = in.readByte();
+        switch (tag) {
+        case NULL:      return null;
+        case STRING:    return in.readUTF();
+        case INTEGER:   return in.readInt();
+        case LONG:      return in.readLong();
+        case BOOLEAN:   return in.readBoolean();
+        case OBJECT:    return (Serializable)in.readObject();
+        default:        throw new InvalidObjectException("Unknown argument type "+tag);
+        }
+    }
+
+    /**
+     * Types of arguments in the compact form.
+     */
+    private static final int NULL = 0, STRING = 1, INTEGER = 2, LONG = 3, BOOLEAN = 4, OBJECT = 5;
+
+    private static Serializable[] toSerializable(Object[] args) {
+        if (args instanceof Serializable[])
+            return (Serializable[])args;
+
+        Serializable[] r = new Serializable[args.length];
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof Serializable) {
+                r[i] = (Serializable)args[i];
+            } else {
+                // MessageFormat only supports formats of "number", "date", "time" and "choice"
+                // All of which will be formatting objects that must be Serializable
+                // Anything else non-null will just have it's toString() method invoked
+                // by MessageFormat, so we'll just call toString here.
+                r[i] = String.valueOf(args[i]);
+            }
+        }
+        return r;
+    }
 }
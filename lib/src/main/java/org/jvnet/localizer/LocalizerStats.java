@@ -0,0 +1,180 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2007-, the localizer project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.localizer;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link ResourceBundleListener} that keeps counters, and exposes them over JMX.
+ *
+ * <p>
+ * Use {@link #install()} to start collecting.
+ */
+public class LocalizerStats extends ResourceBundleListener implements LocalizerStatsMXBean {
+    private final AtomicLong holderLookups = new AtomicLong();
+    private final AtomicLong holderMisses = new AtomicLong();
+    private final AtomicLong bundleLoads = new AtomicLong();
+    private final AtomicLong bundleLoadNanos = new AtomicLong();
+    private final AtomicLong bytesParsed = new AtomicLong();
+    private final AtomicLong formatCount = new AtomicLong();
+    private final AtomicLong formatNanos = new AtomicLong();
+    private final ConcurrentMap<String,AtomicLong> bundleLoadsByLocale = new ConcurrentHashMap<String,AtomicLong>();
+    private final ConcurrentMap<String,AtomicLong> missingResourcesByHolder = new ConcurrentHashMap<String,AtomicLong>();
+
+    @Override
+    public void onHolderLookup(Class<?> owner) {
+        holderLookups.incrementAndGet();
+    }
+
+    @Override
+    public void onHolderCreated(ResourceBundleHolder holder) {
+        holderMisses.incrementAndGet();
+    }
+
+    @Override
+    public void onBundleLoaded(ResourceBundleHolder holder, Locale locale, URL url, long bytes, long nanos) {
+        bundleLoads.incrementAndGet();
+        bundleLoadNanos.addAndGet(nanos);
+        bytesParsed.addAndGet(bytes);
+        increment(bundleLoadsByLocale, locale.toString());
+    }
+
+    @Override
+    public void onFormatted(ResourceBundleHolder holder, Locale locale, String key, long nanos) {
+        formatCount.incrementAndGet();
+        formatNanos.addAndGet(nanos);
+    }
+
+    @Override
+    public void onMissingResource(ResourceBundleHolder holder, Locale locale, String key, MissingResourceException e) {
+        increment(missingResourcesByHolder, holder.owner.getName());
+    }
+
+    private static void increment(ConcurrentMap<String,AtomicLong> counters, String name) {
+        AtomicLong c = counters.get(name);
+        if (c==null) {
+            AtomicLong n = new AtomicLong();
+            c = counters.putIfAbsent(name,n);
+            if (c==null)    c = n;
+        }
+        c.incrementAndGet();
+    }
+
+    private static Map<String,Long> snapshot(ConcurrentMap<String,AtomicLong> counters) {
+        Map<String,Long> r = new TreeMap<String,Long>();
+        for (Map.Entry<String,AtomicLong> e : counters.entrySet())
+            r.put(e.getKey(), e.getValue().get());
+        return r;
+    }
+
+    public long getHolderLookups() {
+        return holderLookups.get();
+    }
+
+    public long getHolderMisses() {
+        return holderMisses.get();
+    }
+
+    public long getBundleLoads() {
+        return bundleLoads.get();
+    }
+
+    public Map<String,Long> getBundleLoadsByLocale() {
+        return snapshot(bundleLoadsByLocale);
+    }
+
+    public long getBundleLoadNanos() {
+        return bundleLoadNanos.get();
+    }
+
+    public long getBytesParsed() {
+        return bytesParsed.get();
+    }
+
+    public long getFormatCount() {
+        return formatCount.get();
+    }
+
+    public long getFormatNanos() {
+        return formatNanos.get();
+    }
+
+    public Map<String,Long> getMissingResourcesByHolder() {
+        return snapshot(missingResourcesByHolder);
+    }
+
+    public long getEstimatedBundleBytes() {
+        long bytes = 0;
+        for (BundleFootprint f : ResourceBundleHolder.getTotalFootprint())
+            bytes += f.getEstimatedBytes();
+        return bytes;
+    }
+
+    public void reset() {
+        holderLookups.set(0);
+        holderMisses.set(0);
+        bundleLoads.set(0);
+        bundleLoadNanos.set(0);
+        bytesParsed.set(0);
+        formatCount.set(0);
+        formatNanos.set(0);
+        bundleLoadsByLocale.clear();
+        missingResourcesByHolder.clear();
+    }
+
+    /**
+     * Creates a new instance, registers it as a {@link ResourceBundleListener},
+     * and exposes it to the platform MBean server as {@link #OBJECT_NAME}.
+     */
+    public static LocalizerStats install() throws JMException {
+        LocalizerStats stats = new LocalizerStats();
+        ManagementFactory.getPlatformMBeanServer().registerMBean(stats, new ObjectName(OBJECT_NAME));
+        register(stats);
+        return stats;
+    }
+
+    /**
+     * Undoes {@link #install()}.
+     */
+    public void uninstall() throws JMException {
+        unregister(this);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name))
+            server.unregisterMBean(name);
+    }
+
+    public static final String OBJECT_NAME = "org.jvnet.localizer:type=LocalizerStats";
+}
@@ -0,0 +1,89 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2007-, the localizer project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.localizer;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link LocalizerStats}.
+ */
+public interface LocalizerStatsMXBean {
+    /**
+     * Number of {@link ResourceBundleHolder#get(Class)} calls.
+     */
+    long getHolderLookups();
+
+    /**
+     * Number of {@link ResourceBundleHolder#get(Class)} calls that had to create a new holder.
+     */
+    long getHolderMisses();
+
+    /**
+     * Number of resource files loaded.
+     */
+    long getBundleLoads();
+
+    /**
+     * Number of resource files loaded, by the locale they are for.
+     */
+    Map<String,Long> getBundleLoadsByLocale();
+
+    /**
+     * Total time spent reading and parsing resource files, in nanoseconds.
+     */
+    long getBundleLoadNanos();
+
+    /**
+     * Total size of the resource files loaded.
+     */
+    long getBytesParsed();
+
+    /**
+     * Number of messages formatted.
+     */
+    long getFormatCount();
+
+    /**
+     * Total time spent formatting messages, in nanoseconds.
+     */
+    long getFormatNanos();
+
+    /**
+     * Number of {@link java.util.MissingResourceException}s, by the name of the holder class.
+     */
+    Map<String,Long> getMissingResourcesByHolder();
+
+    /**
+     * Rough estimate of the memory taken by all the loaded bundles.
+     * This is not a counter, so {@link #reset()} doesn't affect it.
+     *
+     * @see ResourceBundleHolder#getTotalFootprint()
+     */
+    long getEstimatedBundleBytes();
+
+    /**
+     * Sets all the counters back to zero.
+     */
+    void reset();
+}
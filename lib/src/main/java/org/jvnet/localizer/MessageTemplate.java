@@ -0,0 +1,143 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2007-, the localizer project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.localizer;
+
+import java.io.IOException;
+import java.text.FieldPosition;
+import java.text.Format;
+import java.text.MessageFormat;
+import java.util.Locale;
+
+/**
+ * Message pattern that's parsed once and then reused for every format.
+ *
+ * <p>
+ * {@link MessageFormat} is not thread-safe, so the parsed instance is kept as a prototype.
+ * Patterns without sub-formats (the vast majority) are formatted directly from the prototype,
+ * since nothing in it gets mutated during formatting. The rest are formatted from a clone,
+ * which is still a lot cheaper than parsing the pattern all over again.
+ *
+ * <p>
+ * Patterns without any argument don't need {@link MessageFormat} at all,
+ * and their rendered text is computed upfront.
+ */
+final class MessageTemplate {
+    private final String pattern;
+    /**
+     * If the pattern has no argument, the rendered text, which is the same no matter what the arguments are.
+     * Otherwise null.
+     */
+    private final String literal;
+    private final MessageFormat prototype;
+    private final boolean shared;
+
+    MessageTemplate(String pattern) {
+        this.pattern = pattern;
+        if (isLiteral(pattern)) {
+            this.literal = unquote(pattern);
+            this.prototype = null;
+            this.shared = true;
+            return;
+        }
+
+        this.literal = null;
+        this.prototype = new MessageFormat(pattern);
+
+        boolean shared = true;
+        for (Format f : prototype.getFormats())
+            if (f != null)
+                shared = false;
+        this.shared = shared;
+    }
+
+    /**
+     * Does the given pattern have no argument at all?
+     */
+    static boolean isLiteral(String pattern) {
+        return pattern.indexOf('{')<0;
+    }
+
+    /**
+     * Renders a pattern that has no argument, the same way {@link MessageFormat} does;
+     * {@code ''} becomes {@code '}, and other single quotes are dropped.
+     */
+    private static String unquote(String pattern) {
+        int idx = pattern.indexOf('\'');
+        if (idx<0)  return pattern;
+
+        StringBuilder buf = new StringBuilder(pattern.length());
+        buf.append(pattern, 0, idx);
+        for (int i=idx; i<pattern.length(); i++) {
+            char ch = pattern.charAt(i);
+            if (ch=='\'') {
+                if (i+1<pattern.length() && pattern.charAt(i+1)=='\'') {
+                    buf.append(ch);
+                    i++;
+                }
+            } else {
+                buf.append(ch);
+            }
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Same as {@code MessageFormat.format(pattern,args)}.
+     */
+    String format(Object[] args) {
+        if (literal!=null)  return literal;
+        return format(args, new StringBuffer()).toString();
+    }
+
+    /**
+     * Same as {@link #format(Object[])}, except the result is appended to the given {@link Appendable}.
+     */
+    void formatTo(Appendable out, Object[] args) throws IOException {
+        if (literal!=null) {
+            out.append(literal);
+        } else if (out instanceof StringBuffer) {
+            format(args, (StringBuffer)out);
+        } else {
+            // MessageFormat can only write to StringBuffer, but at least we avoid creating a String
+            out.append(format(args, new StringBuffer()));
+        }
+    }
+
+    private StringBuffer format(Object[] args, StringBuffer buf) {
+        MessageFormat mf;
+        if (!prototype.getLocale().equals(Locale.getDefault(Locale.Category.FORMAT))) {
+            // sub-formats are bound to the default locale at the time of parsing,
+            // so if that has changed since then, do what MessageFormat.format would do.
+            mf = new MessageFormat(pattern);
+        } else {
+            mf = shared ? prototype : (MessageFormat) prototype.clone();
+        }
+        return mf.format(args, buf, new FieldPosition(0));
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
@@ -23,18 +23,30 @@
  */
 package org.jvnet.localizer;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.Serializable;
 import java.io.ObjectStreamException;
+import java.io.Writer;
+import java.lang.reflect.UndeclaredThrowableException;
 import java.net.URL;
 import java.net.URLConnection;
-import java.text.MessageFormat;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Maintains {@link ResourceBundle}s per locale.
@@ -42,33 +54,94 @@ import java.lang.ref.WeakReference;
  * @author Kohsuke Kawaguchi
  */
 public final class ResourceBundleHolder implements Serializable {
-    /** Need to cache, but not tie up a classloader refernce in cases of unloading */
-    private static final Map<Class<?>, WeakReference<ResourceBundleHolder>> cache =
-            new WeakHashMap<Class<?>, WeakReference<ResourceBundleHolder>> ();
+    private static final long serialVersionUID = 5743471368266987544L;
+
+    /**
+     * All the holders, for {@link #getTotalFootprint()} and {@link #setReloading(boolean)}.
+     */
+    private static final Set<ResourceBundleHolder> allHolders = Collections.newSetFromMap(new WeakHashMap<ResourceBundleHolder,Boolean>());
+
+    /**
+     * Need to cache, but not tie up a classloader refernce in cases of unloading.
+     *
+     * <p>
+     * {@link ClassValue} stores the holder along with the class itself, so it goes away together
+     * with the class, and lookups don't contend on a lock. {@link #clearCache()} just swaps
+     * in a new instance, which lets the old one and its values get garbage collected.
+     */
+    private static volatile ClassValue<ResourceBundleHolder> cache = createCache();
+
+    private static ClassValue<ResourceBundleHolder> createCache() {
+        return new ClassValue<ResourceBundleHolder>() {
+            @Override
+            @SuppressWarnings("deprecation")
+            protected ResourceBundleHolder computeValue(Class<?> clazz) {
+                ResourceBundleHolder holder = new ResourceBundleHolder(clazz);
+                if (ResourceBundleListener.isActive())
+                    ResourceBundleListener.fireHolderCreated(holder);
+                return holder;
+            }
+        };
+    }
 
     /**
      * Gets a {@link ResourceBundleHolder} for the given class,
      * by utilizing a cache if possible.
      */
-    public synchronized static ResourceBundleHolder get(Class<?> clazz) {
-        WeakReference<ResourceBundleHolder> entry = cache.get(clazz);
-        if (entry != null) {
-            ResourceBundleHolder rbh = entry.get();
-            if (rbh != null)    return rbh;
-        }
-        
-        ResourceBundleHolder rbh = new ResourceBundleHolder(clazz);
-        cache.put(clazz, new WeakReference<ResourceBundleHolder>(rbh));
-        return rbh;
+    public static ResourceBundleHolder get(Class<?> clazz) {
+        if (ResourceBundleListener.isActive())
+            ResourceBundleListener.fireHolderLookup(clazz);
+        return cache.get(clazz);
     }
 
-    private transient final Map<Locale,ResourceBundle> bundles = new ConcurrentHashMap<Locale,ResourceBundle>();
+    /**
+     * Bundles of the locales that have resources of their own.
+     * Other locales are mapped to one of these by {@link #resolution}.
+     */
+    private transient final ConcurrentMap<Locale,CachedBundle> bundles = new ConcurrentHashMap<Locale,CachedBundle>();
+    private transient volatile LocaleResolution resolution = LocaleResolution.empty(-1);
+    /**
+     * Locales this holder has been used for that don't have resources of their own, to the locales they use,
+     * for {@link #getFootprint()}. {@link #resolution} can't tell, since it's shared with other holders.
+     * Only recorded when a locale is looked up the slow way, which is the first time for most of them,
+     * so that the lookups of already loaded bundles don't pay for this.
+     */
+    private transient final ConcurrentMap<Locale,Locale> aliases = new ConcurrentHashMap<Locale,Locale>();
+    /**
+     * Total {@link CachedBundle#weight} of {@link #bundles}.
+     */
+    private transient final AtomicInteger weight = new AtomicInteger();
+    /**
+     * Guards the eviction from {@link #bundles} and the updates to {@link #resolution}.
+     */
+    private transient final Object lock = new Object();
+    private transient volatile int cacheLimit = -1;
+    /**
+     * Bundles that are being loaded right now, so that concurrent requests for the same locale
+     * wait for the same load.
+     */
+    private transient final ConcurrentMap<Locale,FutureTask<ResourceBundle>> loading = new ConcurrentHashMap<Locale,FutureTask<ResourceBundle>>();
+    /**
+     * Lookups scheduled by {@link #getAsync(Locale, Executor)} that haven't completed yet,
+     * keyed by the requested locale, so that concurrent requests share one task.
+     */
+    private transient final ConcurrentMap<Locale,AsyncTask<ResourceBundle>> asyncLoads = new ConcurrentHashMap<Locale,AsyncTask<ResourceBundle>>();
     public final Class<?> owner;
-
+    private transient final String simpleName;
+    /**
+     * Resource name prefix of the package of {@link #owner}, like "org/acme/".
+     */
+    private transient final String packagePath;
+    private transient volatile Resources resources = new Resources(-1, null);
+    private transient volatile ResourceBundleImpl embedded;
+    /**
+     * Incremented whenever a resource file of this holder changes.
+     */
+    private transient final AtomicInteger reloads = new AtomicInteger();
     /**
-     * {@link Locale} object that corresponds to the base bundle.
+     * Keys indexed by their ordinals, if the generated class uses them.
      */
-    private static final Locale ROOT = new Locale("");
+    private transient volatile String[] keys;
 
     /**
      * @param owner
@@ -78,6 +151,52 @@ public final class ResourceBundleHolder implements Serializable {
      */
     public ResourceBundleHolder(Class<?> owner) {
         this.owner = owner;
+        this.simpleName = owner.getSimpleName();
+        String n = owner.getName();
+        this.packagePath = n.substring(0, n.lastIndexOf('.')+1).replace('.','/');
+        synchronized (allHolders) {
+            allHolders.add(this);
+        }
+    }
+
+    /**
+     * Gives this holder the messages of its default property file, so that it doesn't need to load it.
+     * The generated classes call this when they are told to embed the default messages.
+     *
+     * <p>
+     * These are only used with {@link ResourceProvider#DEFAULT}, since any other provider
+     * may well find different resources. Translations are looked for and loaded as usual.
+     *
+     * @param messages
+     *      Keys and values of the default property file, each followed by '\0', like {@code "key\0value\0"}.
+     *      These can be split into any number of strings, which are just concatenated, so that the generated classes
+     *      can pass them as a few string constants, which is much more compact than an array.
+     * @return
+     *      this holder.
+     */
+    public ResourceBundleHolder embedDefaults(String... messages) {
+        String all;
+        if (messages.length==1) {
+            all = messages[0];
+        } else {
+            StringBuilder buf = new StringBuilder();
+            for (String m : messages)
+                buf.append(m);
+            all = buf.toString();
+        }
+
+        Map<String,String> lookup = new HashMap<String,String>();
+        int i = 0;
+        while (i<all.length()) {
+            int k = all.indexOf('\0', i);
+            int v = all.indexOf('\0', k+1);
+            if (k<0 || v<0)
+                throw new IllegalArgumentException("Every key and value needs to be followed by \\0");
+            lookup.put(all.substring(i, k), all.substring(k+1, v));
+            i = v+1;
+        }
+        embedded = new ResourceBundleImpl(lookup);
+        return this;
     }
 
     /**
@@ -91,91 +210,754 @@ public final class ResourceBundleHolder implements Serializable {
      * Loads {@link ResourceBundle} for the locale.
      */
     public ResourceBundle get(Locale locale) {
-        ResourceBundle rb = bundles.get(locale);
-        if(rb!=null)    return rb;
-
-        // try to update the map
-        synchronized(this) {
-            rb = bundles.get(locale);
-            if(rb!=null)    return rb;
-
-            // turns out this is totally unsable because the getBundle method
-            // always checks Locale.getDefault() and that wins over the bundle for the root locale. 
-            // bundles.put(locale, rb=ResourceBundle.getBundle(owner.getName(),locale,owner.getClassLoader()));
-
-            Locale next = getBaseLocale(locale);
-
-            String s = locale.toString();
-            ResourceBundleImpl bundle = null;
-            String basename = owner.getSimpleName()+(s.length()>0?'_'+s:"");
-            bundle = getFromProperties(basename);
-            if (bundle == null) {
-                bundle = getFromXml(basename);
-            }
-            if(bundle != null) {
-                rb = bundle;
-                if(next!=null)
-                bundle.setParent(get(next));
-                bundles.put(locale,bundle);
-            } else {
-                if(next!=null)
-                    // no matching resource, so just use the locale for the base
-                    bundles.put(locale,rb=get(next));
+        ResourceBundle rb = getIfLoaded(locale);
+        if (rb!=null)   return rb;
+
+        rb = get(LocaleChain.of(locale));
+        // now that the fallback chain has been looked at, remember where it leads
+        Locale l = getResolution().resolve(locale);
+        if (l!=null)
+            noteAlias(locale, l);
+        return rb;
+    }
+
+    /**
+     * Returns {@link ResourceBundle} for the locale if it's already loaded and known to be the right one,
+     * or null if finding that out requires a look at the resources.
+     */
+    private ResourceBundle getIfLoaded(Locale locale) {
+        LocaleResolution r = resolution;
+        if (r.generation==ResourceProvider.generation.get()) {
+            Locale l = r.resolve(locale);
+            if (l!=null) {
+                CachedBundle c = bundles.get(l);
+                if(c!=null)
+                    return c.use(this);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Records in {@link #aliases} that the given locale uses the bundle of another, if it does.
+     */
+    private void noteAlias(Locale requested, Locale resolved) {
+        if (requested.equals(resolved) || resolved.equals(aliases.get(requested)))
+            return;
+        // like LocaleResolution, don't keep track of any number of locales from clients
+        if (aliases.size()<MAX_ALIASES || aliases.containsKey(requested))
+            aliases.put(requested, resolved);
+    }
+
+    private static final int MAX_ALIASES = 256;
+
+    /**
+     * Loads {@link ResourceBundle} for the locale without blocking the calling thread.
+     *
+     * <p>
+     * If the bundle is already loaded, the returned {@link Future} is already done.
+     * Otherwise the lookup runs on the given {@link Executor}, and concurrent requests for the same locale
+     * share it. Each gets a {@link Future} of its own, and cancelling that just stops waiting for the lookup,
+     * which goes on for the others.
+     *
+     * @return
+     *      {@link Future} that fails with {@link MissingResourceException} if there's no resource.
+     * @see #getAsync(Locale, Executor, Callback)
+     */
+    public Future<ResourceBundle> getAsync(Locale locale, Executor executor) {
+        return getAsync(locale, executor, null);
+    }
+
+    /**
+     * {@link #getAsync(Locale, Executor)} that also hands the outcome to the given {@link Callback},
+     * so that the caller, such as an event loop, doesn't need to wait for the {@link Future}.
+     *
+     * <p>
+     * The callback is called right away on the calling thread if the bundle is already loaded,
+     * and otherwise on the thread of the executor that loaded it.
+     *
+     * @param callback
+     *      Can be null.
+     */
+    public Future<ResourceBundle> getAsync(final Locale locale, Executor executor, Callback<? super ResourceBundle> callback) {
+        ResourceBundle rb = getIfLoaded(locale);
+        if (rb!=null) {
+            AsyncTask<ResourceBundle> t = new AsyncTask<ResourceBundle>(rb);
+            t.addCallback(callback);
+            return t;
+        }
+
+        AsyncTask<ResourceBundle> load = asyncLoads.get(locale);
+        if (load==null) {
+            AsyncTask<ResourceBundle> t = new AsyncTask<ResourceBundle>(new Callable<ResourceBundle>() {
+                public ResourceBundle call() {
+                    return get(locale);
+                }
+            }) {
+                @Override
+                protected void done() {
+                    // however it completed, the next request needs to start over, or find the bundle loaded
+                    asyncLoads.remove(locale,this);
+                    super.done();
+                }
+            };
+            load = asyncLoads.putIfAbsent(locale,t);
+            if (load==null) {
+                load = t;
+                try {
+                    executor.execute(t);
+                } catch (RuntimeException e) {
+                    asyncLoads.remove(locale,t);
+                    throw e;
+                }
+            }
+        }
+
+        // the load itself isn't handed out, so that no caller can cancel it for the others
+        final AsyncTask<ResourceBundle> task = new AsyncTask<ResourceBundle>();
+        task.addCallback(callback);
+        load.addCallback(new Callback<ResourceBundle>() {
+            public void done(ResourceBundle rb, Throwable failure) {
+                if (failure!=null)
+                    task.fail(failure);
                 else
-                    throw new MissingResourceException(
-                            "No resource was found for "+owner.getName(),owner.getName(),null);
+                    task.complete(rb);
             }
+        });
+        return task;
+    }
+
+    /**
+     * {@link FutureTask} that hands its outcome to {@link Callback}s when it completes.
+     */
+    private static class AsyncTask<V> extends FutureTask<V> {
+        /**
+         * Callbacks to call on completion, or null once it's completed.
+         */
+        private List<Callback<? super V>> callbacks = new ArrayList<Callback<? super V>>(1);
 
+        AsyncTask(Callable<V> task) {
+            super(task);
+        }
+
+        /**
+         * Creates a task that doesn't run anything, and is completed with {@link #complete(Object)}
+         * or {@link #fail(Throwable)} instead.
+         */
+        AsyncTask() {
+            super(NOOP, null);
+        }
+
+        /**
+         * Creates a task that's already completed with the given value.
+         */
+        AsyncTask(V value) {
+            super(NOOP, value);
+            run();
+        }
+
+        void addCallback(Callback<? super V> callback) {
+            if (callback==null)     return;
+            synchronized (this) {
+                if (callbacks!=null) {
+                    callbacks.add(callback);
+                    return;
+                }
+            }
+            call(callback);
+        }
+
+        void complete(V value) {
+            set(value);
+        }
+
+        void fail(Throwable t) {
+            setException(t);
+        }
+
+        @Override
+        protected void done() {
+            List<Callback<? super V>> callbacks;
+            synchronized (this) {
+                callbacks = this.callbacks;
+                this.callbacks = null;
+            }
+            // one failing callback shouldn't keep the others from being called
+            RuntimeException error = null;
+            for (Callback<? super V> c : callbacks) {
+                try {
+                    call(c);
+                } catch (RuntimeException e) {
+                    if (error==null)    error = e;
+                }
+            }
+            if (error!=null)
+                throw error;
+        }
+
+        private void call(Callback<? super V> callback) {
+            V value;
+            try {
+                value = get();      // this doesn't block, since we are done
+            } catch (ExecutionException e) {
+                callback.done(null, e.getCause());
+                return;
+            } catch (CancellationException e) {
+                callback.done(null, e);
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                callback.done(null, e);
+                return;
+            }
+            callback.done(value, null);
+        }
+    }
+
+    private static final Runnable NOOP = new Runnable() {
+        public void run() {
+        }
+    };
+
+    /**
+     * Walks down the fallback chain to the first locale that has resources, loading them if necessary.
+     */
+    private ResourceBundle get(LocaleChain chain) {
+        while (true) {
+            CachedBundle c = bundles.get(chain.locale);
+            if(c!=null)     return hit(chain, c);
+
+            if (!getResolution().isAbsent(chain.suffix)) {
+                // see if some other thread is already loading it, or else load it ourselves.
+                // no lock is held while we do I/O, so that other locales can be loaded in parallel.
+                FutureTask<ResourceBundle> task = loading.get(chain.locale);
+                if (task==null) {
+                    FutureTask<ResourceBundle> t = new FutureTask<ResourceBundle>(new Loader(chain));
+                    task = loading.putIfAbsent(chain.locale,t);
+                    if (task==null) {
+                        task = t;
+                        t.run();
+                    }
+                }
+                ResourceBundle rb = await(task);
+                if (rb!=null)   return rb;
+            }
+
+            // no resources for this locale, so use the locale for the base.
+            // the root locale always has resources, or else load throws MissingResourceException
+            chain = chain.parent;
         }
-        return rb;
     }
 
-    protected ResourceBundleImpl getFromProperties(String basename) {
-        URL res = ResourceProvider.findResource(basename + ".properties", owner);
-        if (res == null) {
+    /**
+     * Returns a bundle found in {@link #bundles}, making sure that {@link #resolution} knows that its locale
+     * has resources. It doesn't after a change of {@link ResourceProvider#generation}, and if we didn't
+     * tell it again, the lookups for this locale would never take the fast path.
+     */
+    private ResourceBundle hit(LocaleChain chain, CachedBundle c) {
+        if (!getResolution().isPresent(chain.suffix))
+            learn(chain, true);
+        return c.use(this);
+    }
+
+    /**
+     * Gets {@link #resolution}, making sure that it's not of an old {@link ResourceProvider#generation}.
+     */
+    private LocaleResolution getResolution() {
+        LocaleResolution r = resolution;
+        int generation = ResourceProvider.generation.get();
+        if (r.generation!=generation) {
+            synchronized (lock) {
+                r = resolution;
+                if (r.generation!=generation)
+                    resolution = r = LocaleResolution.empty(generation);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Records whether the given locale has resources of its own.
+     */
+    private void learn(LocaleChain chain, boolean present) {
+        synchronized (lock) {
+            LocaleResolution r = getResolution();
+            resolution = present ? r.withPresent(chain.suffix) : r.withAbsent(chain.suffix);
+        }
+    }
+
+    /**
+     * Waits for the loading of a bundle to complete, and propagates its failure, if any.
+     */
+    private static ResourceBundle await(FutureTask<ResourceBundle> task) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    // the loading is done by another thread that we can't abort, so just keep waiting
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable t = e.getCause();
+                    if (t instanceof RuntimeException)  throw (RuntimeException)t;
+                    if (t instanceof Error)             throw (Error)t;
+                    throw new UndeclaredThrowableException(t);
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Loads the bundle for one locale, and registers it to {@link #bundles}.
+     * Returns null if the locale has no resources of its own.
+     */
+    private final class Loader implements Callable<ResourceBundle> {
+        private final LocaleChain chain;
+
+        Loader(LocaleChain chain) {
+            this.chain = chain;
+        }
+
+        public ResourceBundle call() {
+            try {
+                // another load may have completed between our miss in bundles and our registration in loading
+                CachedBundle c = bundles.get(chain.locale);
+                if (c!=null)
+                    return hit(chain, c);
+                if (getResolution().isAbsent(chain.suffix))
+                    return null;
+
+                int r = reloads.get();
+                c = load(chain);
+                learn(chain, c!=null);
+                if (c==null)
+                    return null;
+                put(chain.locale,c);
+                if (reloads.get()!=r) {
+                    // a file changed while we were loading, so what we loaded may already be stale
+                    remove(chain.locale,c);
+                }
+                return c.bundle;
+            } finally {
+                // by now the result is either in bundles, or failed to load and needs to be retried
+                loading.remove(chain.locale);
+            }
+        }
+    }
+
+    private CachedBundle load(LocaleChain chain) {
+        // turns out this is totally unsable because the getBundle method
+        // always checks Locale.getDefault() and that wins over the bundle for the root locale.
+        // bundles.put(locale, rb=ResourceBundle.getBundle(owner.getName(),locale,owner.getClassLoader()));
+
+        LocaleChain next = chain.parent;
+
+        ResourceBundleImpl e = embedded;
+        if (e!=null && next==null && watcher==null && ResourceProvider.getProvider()==ResourceProvider.DEFAULT)
+            return new CachedBundle(e);
+
+        ResourceBundleImpl bundle = null;
+        String basename = simpleName+chain.suffix;
+        bundle = getFromProperties(basename, chain.locale);
+        if (bundle == null) {
+            bundle = getFromXml(basename, chain.locale);
+        }
+        if(bundle != null) {
+            if(next!=null) {
+                bundle.setParent(get(next));
+                if (flatten)
+                    bundle = bundle.flatten();
+            }
+            return new CachedBundle(bundle);
+        } else {
+            if(next!=null)
+                // no matching resource, so the caller will use the locale for the base
+                return null;
+            else
+                throw new MissingResourceException(
+                        "No resource was found for "+owner.getName(),owner.getName(),null);
+        }
+    }
+
+    /**
+     * Finds and loads a resource file of this holder.
+     *
+     * <p>
+     * If the resources of this holder are in a {@link BundleArchive}, those in there are read from it
+     * without asking the class loader, even if the class loader would find another one first.
+     * The rest, such as translations shipped in another jar,
+     * and resources of holders without an archive go through {@link ResourceProvider},
+     * remembering the resources that don't exist, so that looking for them again costs nothing.
+     */
+    private ResourceBundleImpl find(String name, boolean xml, Locale locale) {
+        Resources r = resources;
+        int generation = ResourceProvider.generation.get();
+        if (r.generation!=generation)
+            resources = r = new Resources(generation, findArchive());
+
+        if (r.archive!=null) {
+            String path = packagePath+name;
+            InputStream is = r.archive.open(path);
+            if (is!=null)
+                return load(is, r.archive.getSource(path), xml, locale);
+        }
+
+        if (r.missing.contains(name))
+            return null;
+        URL res = ResourceProvider.findResource(name, owner);
+        if (res==null) {
+            // locales can come from clients, so there can be any number of these. past the limit,
+            // resources are just looked for every time
+            if (r.missing.size()<MAX_MISSING)
+                r.missing.add(name);
             return null;
         }
-        // found property file for this locale.
+        BundleWatcher w = watcher;
+        if (w!=null)
+            w.watch(this, res);
+        return load(res, xml, locale);
+    }
+
+    /**
+     * Finds the {@link BundleArchive} that has the resources of this holder, if any.
+     * Archives are only used with {@link ResourceProvider#DEFAULT}, since any other provider
+     * may well find resources somewhere else.
+     */
+    private BundleArchive findArchive() {
+        ClassLoader cl = owner.getClassLoader();
+        if (cl==null || watcher!=null || ResourceProvider.getProvider()!=ResourceProvider.DEFAULT)
+            return null;
         try {
-            URLConnection uc = res.openConnection();
-            uc.setUseCaches(false);
-            InputStream is = uc.getInputStream();
-            ResourceBundleImpl bundle = new ResourceBundleImpl(is);
-            is.close();
-            return bundle;
+            BundleArchive a = BundleArchive.of(cl);
+            String base = packagePath+simpleName;
+            if (a.contains(base+".properties") || a.contains(base+".properties.xml"))
+                return a;
+            return null;
         } catch (IOException e) {
-            MissingResourceException x = new MissingResourceException("Unable to load resource " + res, owner.getName(), null);
+            MissingResourceException x = new MissingResourceException("Unable to read " + BundleArchive.RESOURCE, owner.getName(), null);
             x.initCause(e);
             throw x;
         }
     }
 
-    protected ResourceBundleImpl getFromXml(String basename) {
-        URL res = ResourceProvider.findResource(basename + ".properties.xml", owner);
-        if (res == null) {
-            return null;
+    private static final int MAX_MISSING = 512;
+
+    /**
+     * Where the resources of this holder come from, as of a given {@link ResourceProvider#generation}.
+     */
+    private static final class Resources {
+        final int generation;
+        /**
+         * Non-null if the resources come from this archive.
+         */
+        final BundleArchive archive;
+        /**
+         * Names of resources that {@link ResourceProvider} didn't find, up to {@link #MAX_MISSING}.
+         */
+        final Set<String> missing = Collections.newSetFromMap(new ConcurrentHashMap<String,Boolean>());
+
+        Resources(int generation, BundleArchive archive) {
+            this.generation = generation;
+            this.archive = archive;
+        }
+    }
+
+    /**
+     * Called by {@link BundleWatcher} when a file changed in a directory that this holder loaded from,
+     * to drop the bundle of that file, and those of all the locales that fall back to it.
+     * Other threads keep using the bundles they already have, and load the new ones on their next lookup.
+     *
+     * @param fileName
+     *      Name of the file that changed, or null if it's not known.
+     */
+    void reload(String fileName) {
+        String suffix = null;
+        if (fileName!=null) {
+            int idx = fileName.indexOf(".properties");
+            if (idx<0 || !fileName.startsWith(simpleName))
+                return;
+            suffix = fileName.substring(simpleName.length(), idx);
+            if (suffix.length()>0 && suffix.charAt(0)!='_')
+                return;     // some other bundle whose name starts with ours
+            resources.missing.remove(fileName);
+        } else {
+            resources = new Resources(-1, null);
+            aliases.clear();
+        }
+
+        reloads.incrementAndGet();
+        synchronized (lock) {
+            // the file may have just appeared or disappeared
+            resolution = LocaleResolution.empty(resolution.generation);
+        }
+        invalidate(suffix);
+    }
+
+    /**
+     * Reports the memory taken by the bundles of this holder, one for each locale it has been used for.
+     * Locales without resources of their own are reported as aliases of those that they use.
+     * Aliases are best effort: a locale whose lookup never had to look at the resources,
+     * since what other locales taught this holder was enough, isn't reported.
+     */
+    public List<BundleFootprint> getFootprint() {
+        List<BundleFootprint> r = new ArrayList<BundleFootprint>();
+        long now = System.currentTimeMillis();
+        long nanoNow = System.nanoTime();
+        boolean tracked = getCacheLimit()>0;
+        for (Map.Entry<Locale,CachedBundle> e : bundles.entrySet()) {
+            CachedBundle c = e.getValue();
+            int keys = 0;
+            long bytes = 0;
+            if (c.bundle instanceof ResourceBundleImpl) {
+                keys = ((ResourceBundleImpl)c.bundle).size();
+                bytes = ((ResourceBundleImpl)c.bundle).estimateBytes();
+            }
+            r.add(new BundleFootprint(owner, e.getKey(), null, keys, bytes, tracked ? now-(nanoNow-c.lastUsed)/1000000 : -1));
+        }
+        for (Map.Entry<Locale,Locale> e : aliases.entrySet()) {
+            // skip those that have been evicted, or have gotten resources of their own since
+            if (bundles.containsKey(e.getValue()) && !bundles.containsKey(e.getKey()))
+                r.add(new BundleFootprint(owner, e.getKey(), e.getValue(), 0, 0, -1));
+        }
+        return r;
+    }
+
+    /**
+     * {@link #getFootprint()} of all the holders that are in memory.
+     */
+    public static List<BundleFootprint> getTotalFootprint() {
+        List<BundleFootprint> r = new ArrayList<BundleFootprint>();
+        for (ResourceBundleHolder h : getAllHolders())
+            r.addAll(h.getFootprint());
+        return r;
+    }
+
+    private static List<ResourceBundleHolder> getAllHolders() {
+        synchronized (allHolders) {
+            return new ArrayList<ResourceBundleHolder>(allHolders);
+        }
+    }
+
+    /**
+     * Writes {@link #getTotalFootprint()} to the given file, one tab-separated line for each holder and locale,
+     * to be looked at or processed with other tools.
+     */
+    public static void dumpFootprint(File file) throws IOException {
+        Writer w = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            w.write("#owner\tlocale\tkind\tkeys\testimatedBytes\tlastUsed\n");
+            for (BundleFootprint f : getTotalFootprint())
+                w.write(f+"\n");
+        } finally {
+            w.close();
+        }
+    }
+
+    /**
+     * Changes whenever the resources of this holder are reloaded, so that what was rendered from them
+     * can tell whether it's still current.
+     */
+    int getVersion() {
+        return reloads.get();
+    }
+
+    /**
+     * Drops the bundle of the locale of the given {@link LocaleChain#suffix}, and those of all the locales
+     * that fall back to it.
+     *
+     * @param suffix
+     *      null to drop everything.
+     */
+    private void invalidate(String suffix) {
+        for (Map.Entry<Locale,CachedBundle> e : bundles.entrySet()) {
+            for (LocaleChain c=LocaleChain.of(e.getKey()); c!=null; c=c.parent) {
+                if (suffix==null || c.suffix.equals(suffix)) {
+                    remove(e.getKey(), e.getValue());
+                    break;
+                }
+            }
+        }
+    }
+
+    private void put(Locale locale, CachedBundle c) {
+        CachedBundle old = bundles.put(locale, c);
+        weight.addAndGet(old!=null ? c.weight-old.weight : c.weight);
+        int limit = getCacheLimit();
+        if (limit>0 && weight.get()>limit)
+            evict(limit, locale);
+    }
+
+    private void remove(Locale locale, CachedBundle c) {
+        if (bundles.remove(locale, c))
+            weight.addAndGet(-c.weight);
+    }
+
+    /**
+     * Evicts least recently used bundles until their total weight fits in the given limit.
+     * A bundle takes along the bundles that fall back to it, since they refer to it anyway.
+     * The root bundle is always kept, since every other locale falls back to it.
+     * So is the bundle that's just been loaded, along with those it falls back to, or else a limit
+     * smaller than that would have every lookup load it again.
+     *
+     * @param keep
+     *      Locale of the bundle that's just been loaded, or null.
+     */
+    private void evict(int limit, Locale keep) {
+        LocaleChain kept = keep!=null ? LocaleChain.of(keep) : null;
+        synchronized (lock) {
+            while (weight.get()>limit) {
+                Map.Entry<Locale,CachedBundle> victim = null;
+                for (Map.Entry<Locale,CachedBundle> e : bundles.entrySet()) {
+                    LocaleChain c = LocaleChain.of(e.getKey());
+                    if (c.parent==null || c.isFallbackOf(kept))
+                        continue;
+                    if (victim==null || e.getValue().lastUsed-victim.getValue().lastUsed < 0)
+                        victim = e;
+                }
+                if (victim==null)
+                    return;
+
+                invalidate(LocaleChain.of(victim.getKey()).suffix);
+            }
+        }
+    }
+
+    /**
+     * Caps the memory used by the bundles of this holder, which otherwise keeps the bundles
+     * of all the locales it has ever seen, possibly a lot if the locales come from clients.
+     *
+     * <p>
+     * The limit is a total weight, where the bundle of each locale that has its own resources weighs
+     * the number of messages in it. Locales that just use the bundle of their parent locale don't count.
+     * When it's exceeded, the least recently used ones are evicted, and loaded again when needed.
+     *
+     * @param limit
+     *      0 for no limit, or -1 to use {@link #setDefaultCacheLimit(int)}.
+     */
+    public void setCacheLimit(int limit) {
+        this.cacheLimit = limit;
+        limit = getCacheLimit();
+        if (limit>0 && weight.get()>limit)
+            evict(limit, null);
+    }
+
+    private int getCacheLimit() {
+        int limit = cacheLimit;
+        return limit>=0 ? limit : defaultCacheLimit;
+    }
+
+    /**
+     * {@link #setCacheLimit(int)} for all the holders that don't have their own.
+     * Only takes effect on each holder the next time it loads a bundle.
+     *
+     * <p>
+     * The initial value comes from the {@code org.jvnet.localizer.ResourceBundleHolder.cacheLimit} system property,
+     * and it's 0 (no limit) if that's not set.
+     */
+    public static void setDefaultCacheLimit(int limit) {
+        defaultCacheLimit = limit;
+    }
+
+    private static volatile int defaultCacheLimit = Integer.getInteger(ResourceBundleHolder.class.getName()+".cacheLimit", 0);
+
+    /**
+     * A bundle in {@link #bundles}.
+     */
+    private static final class CachedBundle {
+        final ResourceBundle bundle;
+        final int weight;
+        /**
+         * {@link System#nanoTime()} of the last use, only kept up to date when there's a cache limit.
+         */
+        volatile long lastUsed = System.nanoTime();
+
+        CachedBundle(ResourceBundle bundle) {
+            this.bundle = bundle;
+            this.weight = bundle instanceof ResourceBundleImpl ? Math.max(1, ((ResourceBundleImpl)bundle).size()) : 1;
+        }
+
+        ResourceBundle use(ResourceBundleHolder holder) {
+            if (holder.getCacheLimit()>0)
+                lastUsed = System.nanoTime();
+            return bundle;
         }
-        // found property file for this locale.
+    }
+
+    protected ResourceBundleImpl getFromProperties(String basename, Locale locale) {
+        return find(basename + ".properties", false, locale);
+    }
+
+    protected ResourceBundleImpl getFromXml(String basename, Locale locale) {
+        return find(basename + ".properties.xml", true, locale);
+    }
+
+    private ResourceBundleImpl load(URL res, boolean xml, Locale locale) {
         try {
             URLConnection uc = res.openConnection();
             uc.setUseCaches(false);
-            InputStream is = uc.getInputStream();
-            Properties props = new Properties();
-            props.loadFromXML(is);
-            is.close();
+            return load(uc.getInputStream(), res, xml, locale);
+        } catch (IOException e) {
+            throw loadFailure(res, e);
+        }
+    }
 
-            ByteArrayOutputStream bout = new ByteArrayOutputStream();
-            props.store(bout, "");
-            bout.close();
+    private ResourceBundleImpl load(InputStream is, URL source, boolean xml, Locale locale) {
+        boolean instrumented = ResourceBundleListener.isActive();
+        long start = instrumented ? System.nanoTime() : 0;
+        try {
+            CountingInputStream counter = null;
+            if (instrumented)
+                is = counter = new CountingInputStream(is);
+            ResourceBundleImpl bundle = xml ? new ResourceBundleImpl(XmlProperties.load(is)) : new ResourceBundleImpl(is);
+            is.close();
 
-            ByteArrayInputStream bin = new ByteArrayInputStream(bout.toByteArray());
-            ResourceBundleImpl bundle = new ResourceBundleImpl(bin);
-            bin.close();
+            if (instrumented)
+                ResourceBundleListener.fireBundleLoaded(this, locale, source, counter.count, System.nanoTime()-start);
             return bundle;
         } catch (IOException e) {
-            MissingResourceException x = new MissingResourceException("Unable to load resource " + res, owner.getName(), null);
-            x.initCause(e);
-            throw x;
+            throw loadFailure(source, e);
+        }
+    }
+
+    private MissingResourceException loadFailure(URL res, IOException e) {
+        MissingResourceException x = new MissingResourceException("Unable to load resource " + res, owner.getName(), null);
+        x.initCause(e);
+        return x;
+    }
+
+    /**
+     * Counts the bytes read, for {@link ResourceBundleListener#onBundleLoaded}.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int ch = super.read();
+            if (ch>=0)  count++;
+            return ch;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n>0)    count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
         }
     }
 
@@ -184,40 +966,468 @@ public final class ResourceBundleHolder implements Serializable {
         return getClass().getName()+"["+owner.getName()+"]";
     }
 
-    static class ResourceBundleImpl extends PropertyResourceBundle {
+    static class ResourceBundleImpl extends ResourceBundle {
+        private final Map<String,String> lookup;
+
+        /**
+         * Parsed message patterns, keyed by the resource key.
+         * A reloaded bundle is a new instance, so it always starts afresh.
+         */
+        private final ConcurrentMap<String,MessageTemplate> templates = new ConcurrentHashMap<String,MessageTemplate>();
+
         ResourceBundleImpl(InputStream stream) throws IOException {
-            super(stream);
+            this(load(stream));
+        }
+
+        ResourceBundleImpl(Map<String,String> lookup) {
+            this.lookup = deduplicating ? StringPool.intern(lookup) : lookup;
+            // messages without arguments are rendered right away, so that formatting them is just a lookup.
+            // these refer to the strings in this.lookup, so that they're shared when deduplicating
+            for (Map.Entry<String,String> e : this.lookup.entrySet()) {
+                if (MessageTemplate.isLiteral(e.getValue()))
+                    templates.put(e.getKey(), new MessageTemplate(e.getValue()));
+            }
+        }
+
+        private static Map<String,String> load(InputStream stream) throws IOException {
+            // PropertyResourceBundle takes care of figuring out the encoding of the file
+            PropertyResourceBundle props = new PropertyResourceBundle(stream);
+            Map<String,String> lookup = new HashMap<String,String>();
+            for (String key : props.keySet())
+                lookup.put(key, props.getString(key));
+            return lookup;
+        }
+
+        /**
+         * Number of messages in this bundle itself.
+         */
+        int size() {
+            return lookup.size();
+        }
+
+        /**
+         * Roughly estimates the memory taken by the keys and messages of this bundle itself.
+         */
+        long estimateBytes() {
+            long bytes = 48 + 8L*lookup.size();     // the map and its table
+            for (Map.Entry<String,String> e : lookup.entrySet())
+                bytes += 32 + estimateBytes(e.getKey()) + estimateBytes(e.getValue());
+            return bytes;
+        }
+
+        private static long estimateBytes(String s) {
+            return 40 + 2L*s.length();
         }
 
         protected void setParent(ResourceBundle parent) {
             super.setParent(parent);
         }
+
+        @Override
+        protected Object handleGetObject(String key) {
+            if (key == null)    throw new NullPointerException();
+            return lookup.get(key);
+        }
+
+        @Override
+        protected Set<String> handleKeySet() {
+            return lookup.keySet();
+        }
+
+        @Override
+        public Enumeration<String> getKeys() {
+            if (parent == null)
+                return Collections.enumeration(lookup.keySet());
+            Set<String> keys = new HashSet<String>(lookup.keySet());
+            keys.addAll(parent.keySet());
+            return Collections.enumeration(keys);
+        }
+
+        /**
+         * Creates a bundle that has all the keys of this bundle and its parents merged into one table,
+         * so that every lookup is a single probe, no matter which locale defines the key.
+         */
+        ResourceBundleImpl flatten() {
+            if (parent == null)     return this;
+            Map<String,String> merged = new HashMap<String,String>();
+            for (String key : keySet())
+                merged.put(key, getString(key));
+            return new ResourceBundleImpl(Collections.unmodifiableMap(merged));
+        }
+
+        /**
+         * Gets the parsed message pattern for the given key, parsing it on the first use.
+         * Keys inherited from the parent are cached in the parent bundle.
+         */
+        MessageTemplate getTemplate(String key) {
+            MessageTemplate t = templates.get(key);
+            if (t != null)  return t;
+
+            Object value = handleGetObject(key);
+            if (value == null) {
+                if (parent instanceof ResourceBundleImpl)
+                    return ((ResourceBundleImpl)parent).getTemplate(key);
+                value = getString(key);    // this throws MissingResourceException if the key doesn't exist
+            }
+
+            t = new MessageTemplate((String)value);
+            MessageTemplate prev = templates.putIfAbsent(key, t);
+            return prev != null ? prev : t;
+        }
+
+        /**
+         * Templates indexed by key ordinals, filled in as they are used.
+         */
+        private volatile OrdinalTemplates ordinals;
+
+        /**
+         * Gets the template of {@code keys[ordinal]}, by an array index once it's been looked up.
+         */
+        MessageTemplate getTemplate(String[] keys, int ordinal) {
+            OrdinalTemplates o = ordinals;
+            if (o == null || o.keys != keys)
+                ordinals = o = new OrdinalTemplates(keys);
+            MessageTemplate t = o.templates[ordinal];
+            if (t == null) {
+                // racing threads just store the same template, which is safe to publish since it's immutable
+                o.templates[ordinal] = t = getTemplate(keys[ordinal]);
+            }
+            return t;
+        }
     }
 
-    /**
-     * Returns the locale to fall back to.
-     */
-    private Locale getBaseLocale(Locale l) {
-        if (l.getVariant().length() > 0)
-            return new Locale(l.getLanguage(), l.getCountry());
-        if (l.getCountry().length() > 0)
-            return new Locale(l.getLanguage());
-        if (l.getLanguage().length()>0)
-            return ROOT;
-        return null;
+    private static final class OrdinalTemplates {
+        final String[] keys;
+        final MessageTemplate[] templates;
+
+        OrdinalTemplates(String[] keys) {
+            this.keys = keys;
+            this.templates = new MessageTemplate[keys.length];
+        }
     }
 
     /**
      * Formats a resource specified by the given key by using the default locale
      */
     public String format(String key, Object... args) {
-        return MessageFormat.format(get(LocaleProvider.getLocale()).getString(key),args);
+        return format(LocaleProvider.getLocale(), key, args);
+    }
+
+    /**
+     * Formats a resource specified by the given key by using the given locale.
+     *
+     * <p>
+     * This is equivalent to {@code MessageFormat.format(get(locale).getString(key),args)},
+     * except that the message pattern is parsed only once.
+     */
+    public String format(Locale locale, String key, Object... args) {
+        if (!ResourceBundleListener.isActive())
+            return getTemplate(locale, key).format(args);
+
+        long start = System.nanoTime();
+        String s = getTemplate(locale, key).format(args);
+        ResourceBundleListener.fireFormatted(this, locale, key, System.nanoTime()-start);
+        return s;
+    }
+
+    /**
+     * Formats a resource specified by the given key by using the given locale, without blocking the calling thread
+     * when the bundle needs to be loaded first.
+     *
+     * <p>
+     * If the bundle is already loaded, the message is formatted right away and the returned {@link Future} is already done.
+     * Otherwise the bundle is loaded by {@link #getAsync(Locale, Executor)}, and the message is formatted on the
+     * thread that loaded it.
+     *
+     * @see #formatAsync(Executor, Locale, String, Callback, Object...)
+     */
+    public Future<String> formatAsync(Executor executor, Locale locale, String key, Object... args) {
+        return formatAsync(executor, locale, key, null, args);
+    }
+
+    /**
+     * {@link #formatAsync(Executor, Locale, String, Object...)} that also hands the outcome to the given {@link Callback},
+     * which is called the same way as that of {@link #getAsync(Locale, Executor, Callback)}.
+     *
+     * @param callback
+     *      Can be null.
+     */
+    public Future<String> formatAsync(Executor executor, final Locale locale, final String key, Callback<? super String> callback, final Object... args) {
+        final AsyncTask<String> task = new AsyncTask<String>(new Callable<String>() {
+            public String call() {
+                return format(locale, key, args);
+            }
+        });
+        task.addCallback(callback);
+        if (getIfLoaded(locale)!=null) {
+            task.run();
+            return task;
+        }
+
+        getAsync(locale, executor, new Callback<ResourceBundle>() {
+            public void done(ResourceBundle rb, Throwable failure) {
+                if (failure!=null)
+                    task.fail(failure);
+                else
+                    task.run();
+            }
+        });
+        return task;
+    }
+
+    /**
+     * Formats a resource specified by the given key by using the default locale,
+     * and writes it to the given {@link Appendable}.
+     */
+    public void formatTo(Appendable out, String key, Object... args) throws IOException {
+        formatTo(out, LocaleProvider.getLocale(), key, args);
+    }
+
+    /**
+     * Formats a resource specified by the given key by using the given locale,
+     * and writes it to the given {@link Appendable}.
+     */
+    public void formatTo(Appendable out, Locale locale, String key, Object... args) throws IOException {
+        if (!ResourceBundleListener.isActive()) {
+            getTemplate(locale, key).formatTo(out, args);
+            return;
+        }
+
+        long start = System.nanoTime();
+        getTemplate(locale, key).formatTo(out, args);
+        ResourceBundleListener.fireFormatted(this, locale, key, System.nanoTime()-start);
+    }
+
+    /**
+     * Gives the keys of this holder their ordinals, so that messages can be formatted by
+     * {@link #format(int, Object...)}, which looks them up by an array index instead of hashing the key.
+     * The generated classes call this when they are told to use ordinals.
+     *
+     * @param keys
+     *      All the keys, where the index of a key is its ordinal.
+     * @return
+     *      this holder.
+     */
+    public ResourceBundleHolder indexKeys(String... keys) {
+        this.keys = keys;
+        return this;
+    }
+
+    /**
+     * Formats the resource of the given ordinal by using the default locale.
+     *
+     * @see #indexKeys(String...)
+     */
+    public String format(int ordinal, Object... args) {
+        return format(LocaleProvider.getLocale(), ordinal, args);
+    }
+
+    /**
+     * Formats the resource of the given ordinal by using the given locale.
+     *
+     * @see #indexKeys(String...)
+     */
+    public String format(Locale locale, int ordinal, Object... args) {
+        if (!ResourceBundleListener.isActive())
+            return getTemplate(locale, ordinal).format(args);
+
+        long start = System.nanoTime();
+        String s = getTemplate(locale, ordinal).format(args);
+        ResourceBundleListener.fireFormatted(this, locale, keys[ordinal], System.nanoTime()-start);
+        return s;
+    }
+
+    /**
+     * Formats the resource of the given ordinal by using the default locale,
+     * and writes it to the given {@link Appendable}.
+     *
+     * @see #indexKeys(String...)
+     */
+    public void formatTo(Appendable out, int ordinal, Object... args) throws IOException {
+        Locale locale = LocaleProvider.getLocale();
+        if (!ResourceBundleListener.isActive()) {
+            getTemplate(locale, ordinal).formatTo(out, args);
+            return;
+        }
+
+        long start = System.nanoTime();
+        getTemplate(locale, ordinal).formatTo(out, args);
+        ResourceBundleListener.fireFormatted(this, locale, keys[ordinal], System.nanoTime()-start);
+    }
+
+    private MessageTemplate getTemplate(Locale locale, int ordinal) {
+        String[] keys = this.keys;
+        if (keys == null)
+            throw new IllegalStateException("Keys of "+owner.getName()+" have no ordinals");
+        try {
+            return ((ResourceBundleImpl)get(locale)).getTemplate(keys, ordinal);
+        } catch (MissingResourceException e) {
+            if (ResourceBundleListener.isActive())
+                ResourceBundleListener.fireMissingResource(this, locale, keys[ordinal], e);
+            throw e;
+        }
+    }
+
+    private MessageTemplate getTemplate(Locale locale, String key) {
+        try {
+            return ((ResourceBundleImpl)get(locale)).getTemplate(key);
+        } catch (MissingResourceException e) {
+            if (ResourceBundleListener.isActive())
+                ResourceBundleListener.fireMissingResource(this, locale, key, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Loads the bundles of the given classes for the given locales on the given {@link Executor},
+     * so that the cost of loading them is paid upfront, for example during the start up,
+     * instead of by the first request in each locale.
+     *
+     * @param classes
+     *      Owner classes of the holders, such as those returned from {@link #findHolderClasses(ClassLoader)}.
+     * @return
+     *      One {@link Future} for each class and locale combination,
+     *      which fails with {@link MissingResourceException} if the class doesn't have any resource.
+     */
+    public static List<Future<ResourceBundle>> preload(Collection<? extends Class<?>> classes, Collection<Locale> locales, Executor executor) {
+        List<Future<ResourceBundle>> r = new ArrayList<Future<ResourceBundle>>(classes.size()*locales.size());
+        for (Class<?> c : classes) {
+            final ResourceBundleHolder holder = get(c);
+            for (final Locale locale : locales) {
+                FutureTask<ResourceBundle> task = new FutureTask<ResourceBundle>(new Callable<ResourceBundle>() {
+                    public ResourceBundle call() {
+                        return holder.get(locale);
+                    }
+                });
+                executor.execute(task);
+                r.add(task);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Finds all the generated classes that are listed in the {@link #HOLDER_INDEX} resources
+     * visible to the given class loader.
+     *
+     * <p>
+     * The index is written by the generator when asked to, and classes listed there
+     * but no longer loadable are skipped. The classes aren't initialized.
+     */
+    public static List<Class<?>> findHolderClasses(ClassLoader cl) throws IOException {
+        Set<String> names = new LinkedHashSet<String>();
+        Enumeration<URL> e = cl.getResources(HOLDER_INDEX);
+        while (e.hasMoreElements()) {
+            BufferedReader r = new BufferedReader(new InputStreamReader(e.nextElement().openStream(), "UTF-8"));
+            try {
+                String line;
+                while ((line=r.readLine())!=null) {
+                    line = line.trim();
+                    if (line.length()>0 && !line.startsWith("#"))
+                        names.add(line);
+                }
+            } finally {
+                r.close();
+            }
+        }
+
+        List<Class<?>> r = new ArrayList<Class<?>>(names.size());
+        for (String name : names) {
+            try {
+                r.add(Class.forName(name, false, cl));
+            } catch (ClassNotFoundException x) {
+                // the index is stale. just skip it
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Resource that lists generated classes, one fully qualified class name per line.
+     *
+     * @see #findHolderClasses(ClassLoader)
+     */
+    public static final String HOLDER_INDEX = "META-INF/localizer/holders";
+
+    /**
+     * Controls whether each loaded locale gets its own table that has all the inherited keys merged in,
+     * instead of a bundle that defers to the bundle of its parent locale for missing keys.
+     *
+     * <p>
+     * This makes each lookup a single probe, at the expense of memory for the merged tables.
+     * Only affects the bundles that are loaded from now on.
+     * The initial value comes from the {@code org.jvnet.localizer.ResourceBundleHolder.flatten} system property.
+     */
+    public static void setFlatten(boolean flatten) {
+        ResourceBundleHolder.flatten = flatten;
+    }
+
+    private static volatile boolean flatten = Boolean.getBoolean(ResourceBundleHolder.class.getName()+".flatten");
+
+    /**
+     * Turns on or off sharing the same keys and messages between all the bundles,
+     * instead of each bundle having its own copies. This saves memory when there are many holders and locales,
+     * since translations often leave messages as they are, and common words like "OK" are everywhere.
+     * Loading bundles takes a bit longer, though.
+     *
+     * <p>
+     * Only affects the bundles that are loaded from now on.
+     * The initial value comes from the {@code org.jvnet.localizer.ResourceBundleHolder.deduplicate} system property.
+     */
+    public static void setDeduplicating(boolean deduplicating) {
+        ResourceBundleHolder.deduplicating = deduplicating;
+    }
+
+    private static volatile boolean deduplicating = Boolean.getBoolean(ResourceBundleHolder.class.getName()+".deduplicate");
+
+    /**
+     * Turns on or off reloading resource files when they change, which is handy during development.
+     *
+     * <p>
+     * While this is on, the directories that resource files are loaded from are watched,
+     * and when a file changes, the bundles that come from it are loaded again on their next use.
+     * Only resources in the file system are watched, and {@link BundleArchive}s and
+     * {@link #embedDefaults(String[], String...) embedded defaults} are not used.
+     *
+     * <p>
+     * The initial value comes from the {@code org.jvnet.localizer.ResourceBundleHolder.reload} system property.
+     */
+    public static synchronized void setReloading(boolean reloading) throws IOException {
+        if (reloading == (watcher!=null))
+            return;
+        if (reloading) {
+            watcher = new BundleWatcher();
+            // bundles loaded so far aren't watched, so load them again, which watches them
+            for (ResourceBundleHolder h : getAllHolders())
+                h.reload(null);
+        } else {
+            watcher.close();
+            watcher = null;
+        }
+        // make the holders decide again where to load resources from
+        ResourceProvider.generation.incrementAndGet();
+    }
+
+    private static volatile BundleWatcher watcher;
+
+    static {
+        if (Boolean.getBoolean(ResourceBundleHolder.class.getName()+".reload")) {
+            try {
+                setReloading(true);
+            } catch (IOException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
     }
 
     /**
      * Clear the cache used by {@link #get(Class)}. This is useful in case of changes to {@link ResourceProvider}.
+     * This also makes all the holders look again for the resources they previously found missing,
+     * and re-read {@link BundleArchive}s.
      */
-    public synchronized static void clearCache() {
-        cache.clear();
+    public static void clearCache() {
+        cache = createCache();
+        BundleArchive.clearCache();
+        ResourceProvider.generation.incrementAndGet();
     }
 }
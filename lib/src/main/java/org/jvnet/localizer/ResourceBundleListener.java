@@ -0,0 +1,138 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2007-, the localizer project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.localizer;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.MissingResourceException;
+
+/**
+ * Receives notifications about what {@link ResourceBundleHolder}s do, for monitoring their cost.
+ *
+ * <p>
+ * Methods are called synchronously on the thread that did the work, so they need to be fast and thread-safe.
+ * All of them do nothing by default. When no listener is registered, {@link ResourceBundleHolder}
+ * does no measurement at all.
+ *
+ * @see LocalizerStats
+ */
+public abstract class ResourceBundleListener {
+    /**
+     * Called for each {@link ResourceBundleHolder#get(Class)}.
+     */
+    public void onHolderLookup(Class<?> owner) {}
+
+    /**
+     * Called when {@link ResourceBundleHolder#get(Class)} didn't have a holder for the class and created one.
+     */
+    public void onHolderCreated(ResourceBundleHolder holder) {}
+
+    /**
+     * Called when a resource file is loaded.
+     *
+     * @param locale
+     *      The locale the file is for.
+     * @param bytes
+     *      Size of the file.
+     * @param nanos
+     *      How long it took to read and parse the file.
+     */
+    public void onBundleLoaded(ResourceBundleHolder holder, Locale locale, URL url, long bytes, long nanos) {}
+
+    /**
+     * Called when a message is formatted.
+     *
+     * @param nanos
+     *      How long it took, including the lookup of the bundle.
+     */
+    public void onFormatted(ResourceBundleHolder holder, Locale locale, String key, long nanos) {}
+
+    /**
+     * Called when a message couldn't be formatted because the key or the whole resource was missing.
+     */
+    public void onMissingResource(ResourceBundleHolder holder, Locale locale, String key, MissingResourceException e) {}
+
+    /**
+     * Starts sending notifications to the given listener.
+     */
+    public static synchronized void register(ResourceBundleListener l) {
+        if (l==null)    throw new IllegalArgumentException();
+        ResourceBundleListener[] a = Arrays.copyOf(listeners, listeners.length+1);
+        a[a.length-1] = l;
+        listeners = a;
+    }
+
+    /**
+     * Stops sending notifications to the given listener.
+     */
+    public static synchronized void unregister(ResourceBundleListener l) {
+        for (int i=0; i<listeners.length; i++) {
+            if (listeners[i]==l) {
+                ResourceBundleListener[] a = new ResourceBundleListener[listeners.length-1];
+                System.arraycopy(listeners, 0, a, 0, i);
+                System.arraycopy(listeners, i+1, a, i, a.length-i);
+                listeners = a;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Is there any listener? Callers skip measurement when there isn't.
+     */
+    static boolean isActive() {
+        return listeners.length>0;
+    }
+
+    static void fireHolderLookup(Class<?> owner) {
+        for (ResourceBundleListener l : listeners)
+            l.onHolderLookup(owner);
+    }
+
+    static void fireHolderCreated(ResourceBundleHolder holder) {
+        for (ResourceBundleListener l : listeners)
+            l.onHolderCreated(holder);
+    }
+
+    static void fireBundleLoaded(ResourceBundleHolder holder, Locale locale, URL url, long bytes, long nanos) {
+        for (ResourceBundleListener l : listeners)
+            l.onBundleLoaded(holder, locale, url, bytes, nanos);
+    }
+
+    static void fireFormatted(ResourceBundleHolder holder, Locale locale, String key, long nanos) {
+        for (ResourceBundleListener l : listeners)
+            l.onFormatted(holder, locale, key, nanos);
+    }
+
+    static void fireMissingResource(ResourceBundleHolder holder, Locale locale, String key, MissingResourceException e) {
+        for (ResourceBundleListener l : listeners)
+            l.onMissingResource(holder, locale, key, e);
+    }
+
+    /**
+     * Copy-on-write, since it's read on every format but rarely changes.
+     */
+    private static volatile ResourceBundleListener[] listeners = new ResourceBundleListener[0];
+}
@@ -1,6 +1,7 @@
 package org.jvnet.localizer;
 
 import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Allows customizing what class loader is used to find a given resource.
@@ -27,6 +28,7 @@ public abstract class ResourceProvider {
             throw new IllegalArgumentException();
         }
         theInstance = p;
+        generation.incrementAndGet();
     }
 
     /**
@@ -55,4 +57,10 @@ public abstract class ResourceProvider {
     };
 
     private static volatile ResourceProvider theInstance = DEFAULT;
+
+    /**
+     * Incremented whenever what {@link #findResource(String, Class)} returns might have changed,
+     * so that {@link ResourceBundleHolder}s know to forget the resources they found missing.
+     */
+    static final AtomicInteger generation = new AtomicInteger();
 }
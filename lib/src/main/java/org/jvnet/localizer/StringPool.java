@@ -0,0 +1,67 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2007-, the localizer project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.localizer;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Canonical instances of the keys and messages of all the bundles,
+ * so that the same text in different locales and different holders is kept in memory only once.
+ *
+ * <p>
+ * The pool only refers to them weakly, so the strings of bundles that are no longer used,
+ * for example those from an unloaded class loader, can still be garbage collected.
+ *
+ * @see ResourceBundleHolder#setDeduplicating(boolean)
+ */
+final class StringPool {
+    private StringPool() {}
+
+    private static final Map<String,WeakReference<String>> pool = new WeakHashMap<String,WeakReference<String>>();
+
+    static String intern(String s) {
+        synchronized (pool) {
+            WeakReference<String> ref = pool.get(s);
+            String c = ref!=null ? ref.get() : null;
+            if (c==null)
+                pool.put(c=s, new WeakReference<String>(s));
+            return c;
+        }
+    }
+
+    /**
+     * Copies the given map with the canonical instances of its keys and values.
+     */
+    static Map<String,String> intern(Map<String,String> map) {
+        Map<String,String> r = new HashMap<String,String>(map.size()*4/3+1);
+        synchronized (pool) {
+            for (Map.Entry<String,String> e : map.entrySet())
+                r.put(intern(e.getKey()), intern(e.getValue()));
+        }
+        return r;
+    }
+}
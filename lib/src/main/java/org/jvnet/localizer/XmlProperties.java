@@ -0,0 +1,123 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2007-, the localizer project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jvnet.localizer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.InvalidPropertiesFormatException;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Reads the XML format of {@link Properties#loadFromXML(InputStream)} in one streaming pass,
+ * straight into a map.
+ *
+ * <p>
+ * What's accepted and rejected is the same as {@link Properties#loadFromXML(InputStream)},
+ * including its quirks, so that switching between the two doesn't break any file.
+ */
+final class XmlProperties {
+    private XmlProperties() {}
+
+    /**
+     * Reads {@code <entry key="...">value</entry>} elements from the given stream.
+     * The stream is not closed.
+     */
+    static Map<String,String> load(InputStream in) throws IOException {
+        Map<String,String> props = new HashMap<String,String>();
+        try {
+            XMLStreamReader r = FACTORY.createXMLStreamReader(in);
+            try {
+                // skip the prolog. like Properties, insist on DOCTYPE, but don't read the DTD
+                boolean doctype = false;
+                while (r.next()!=XMLStreamReader.START_ELEMENT) {
+                    if (r.getEventType()==XMLStreamReader.DTD)
+                        doctype = true;
+                }
+                if (!doctype)
+                    throw new InvalidPropertiesFormatException("An XML properties document must contain the DOCTYPE declaration");
+                if (!r.getLocalName().equals("properties"))
+                    throw new InvalidPropertiesFormatException("Expected <properties> but found <"+r.getLocalName()+">");
+                while (r.nextTag()==XMLStreamReader.START_ELEMENT) {
+                    String name = r.getLocalName();
+                    if (name.equals("comment")) {
+                        getElementText(r);
+                    } else if (name.equals("entry")) {
+                        String key = r.getAttributeValue(null, "key");
+                        if (key==null)
+                            throw new InvalidPropertiesFormatException("<entry> without the key attribute at "+r.getLocation());
+                        props.put(key, getElementText(r));
+                    } else {
+                        throw new InvalidPropertiesFormatException("Unexpected <"+name+"> at "+r.getLocation());
+                    }
+                }
+            } finally {
+                r.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new InvalidPropertiesFormatException(e);
+        }
+        return props;
+    }
+
+    /**
+     * Like {@link XMLStreamReader#getElementText()}, except that references to undefined entities are dropped,
+     * as {@link Properties#loadFromXML(InputStream)} does.
+     */
+    private static String getElementText(XMLStreamReader r) throws XMLStreamException {
+        StringBuilder buf = new StringBuilder();
+        while (true) {
+            switch (r.next()) {
+            case XMLStreamReader.CHARACTERS:
+            case XMLStreamReader.CDATA:
+            case XMLStreamReader.SPACE:
+                buf.append(r.getText());
+                break;
+            case XMLStreamReader.END_ELEMENT:
+                return buf.toString();
+            case XMLStreamReader.START_ELEMENT:
+            case XMLStreamReader.END_DOCUMENT:
+                throw new XMLStreamException("Expected text only", r.getLocation());
+            default:
+                // comments, processing instructions, and references to undefined entities
+            }
+        }
+    }
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory f = XMLInputFactory.newInstance();
+        // the DOCTYPE refers to http://java.sun.com/dtd/properties.dtd, which we don't want to fetch
+        f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        // report undefined entities instead of failing on them. the predefined ones are still replaced
+        f.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, false);
+        return f;
+    }
+}
@@ -0,0 +1,108 @@
+package org.jvnet.localizer;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+public class BundleArchiveTest extends TestCase {
+    public void testRoundTrip() throws Exception {
+        Map<String,byte[]> resources = new LinkedHashMap<String,byte[]>();
+        resources.put("org/acme/Messages.properties", "a=b\n".getBytes("ISO-8859-1"));
+        resources.put("org/acme/Messages_de.properties", "a=c\n".getBytes("ISO-8859-1"));
+        resources.put("org/acme/Empty.properties", new byte[0]);
+
+        File dir = File.createTempFile("archive", "");
+        dir.delete();
+        File f = new File(dir, BundleArchive.RESOURCE);
+        f.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(f);
+        BundleArchive.write(resources, out);
+        out.close();
+
+        BundleArchive a = BundleArchive.of(new URLClassLoader(new URL[]{dir.toURI().toURL()}, null));
+        for (Map.Entry<String,byte[]> e : resources.entrySet()) {
+            assertTrue(a.contains(e.getKey()));
+            assertEquals(new String(e.getValue(), "ISO-8859-1"), read(a.open(e.getKey())));
+        }
+        assertEquals(f.toURI().toURL().toString(), a.getSource("org/acme/Messages.properties").toString());
+        assertFalse(a.contains("org/acme/Messages_fr.properties"));
+        assertNull(a.open("org/acme/Messages_fr.properties"));
+
+        assertSame(BundleArchive.EMPTY, BundleArchive.of(new URLClassLoader(new URL[0], null)));
+    }
+
+    /**
+     * Translations that aren't in the archive, such as those shipped in another jar, are still found.
+     */
+    @SuppressWarnings("deprecation")        // not to use a cache.
+    public void testResourcesOutsideArchive() throws Exception {
+        Map<String,byte[]> resources = new LinkedHashMap<String,byte[]>();
+        resources.put("org/jvnet/localizer/ResourceBundleHolderTest.properties", "literal=archived\n".getBytes("ISO-8859-1"));
+        File dir = File.createTempFile("archive", "");
+        dir.delete();
+        File f = new File(dir, BundleArchive.RESOURCE);
+        f.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(f);
+        BundleArchive.write(resources, out);
+        out.close();
+
+        // the owner class needs to come from the class loader that sees the archive
+        final ClassLoader parent = getClass().getClassLoader();
+        ClassLoader cl = new URLClassLoader(new URL[]{dir.toURI().toURL()}, parent) {
+            @Override
+            protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                if (!name.equals(ResourceBundleHolderTest.class.getName()))
+                    return super.loadClass(name, resolve);
+                Class<?> c = findLoadedClass(name);
+                if (c==null) {
+                    try {
+                        byte[] b = readBytes(parent.getResourceAsStream(name.replace('.','/')+".class"));
+                        c = defineClass(name, b, 0, b.length);
+                    } catch (Exception e) {
+                        throw new ClassNotFoundException(name, e);
+                    }
+                }
+                return c;
+            }
+        };
+
+        ResourceBundleHolder h = new ResourceBundleHolder(cl.loadClass(ResourceBundleHolderTest.class.getName()));
+        // the parent class loader, which comes first, has another ResourceBundleHolderTest.properties,
+        // but what's in the archive wins
+        String base = "org/jvnet/localizer/ResourceBundleHolderTest.properties";
+        assertEquals(parent.getResource(base), cl.getResource(base));
+        assertEquals("archived", h.format(Locale.ROOT, "literal"));
+        // Messages_de.properties is only on the class path
+        assertEquals("schlichter Text", h.format(Locale.GERMANY, "literal"));
+        assertEquals("archived", h.format(Locale.FRENCH, "literal"));
+    }
+
+    private static byte[] readBytes(InputStream in) throws Exception {
+        try {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            int ch;
+            while ((ch=in.read())>=0)
+                buf.write(ch);
+            return buf.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String read(InputStream in) throws Exception {
+        StringBuilder buf = new StringBuilder();
+        int ch;
+        while ((ch=in.read())>=0)
+            buf.append((char)ch);
+        return buf.toString();
+    }
+}
@@ -0,0 +1,36 @@
+package org.jvnet.localizer;
+
+import junit.framework.TestCase;
+
+import java.lang.reflect.Field;
+import java.util.Locale;
+import java.util.Map;
+
+public class LocaleChainTest extends TestCase {
+    public void testChain() {
+        assertEquals("de_AT_Wien -> de_AT -> de -> (root)", LocaleChain.of(new Locale("de", "AT", "Wien")).toString());
+        assertSame(LocaleChain.of(Locale.GERMANY), LocaleChain.of(Locale.GERMANY));
+        assertEquals("_de_DE", LocaleChain.of(Locale.GERMANY).suffix);
+        assertEquals("", LocaleChain.of(LocaleChain.ROOT).suffix);
+    }
+
+    public void testFallbackOf() {
+        LocaleChain c = LocaleChain.of(Locale.GERMANY);
+        assertTrue(LocaleChain.of(Locale.GERMAN).isFallbackOf(c));
+        assertTrue(LocaleChain.of(LocaleChain.ROOT).isFallbackOf(c));
+        assertTrue(c.isFallbackOf(c));
+        assertFalse(c.isFallbackOf(LocaleChain.of(Locale.GERMAN)));
+        assertFalse(LocaleChain.of(Locale.FRENCH).isFallbackOf(c));
+        assertFalse(c.isFallbackOf(null));
+    }
+
+    public void testBounded() throws Exception {
+        // locales from clients, such as those in Accept-Language, can be anything
+        for (int i=0; i<10000; i++)
+            assertEquals("_en_US_x"+i, LocaleChain.of(new Locale("en", "US", "x"+i)).suffix);
+
+        Field f = LocaleChain.class.getDeclaredField("chains");
+        f.setAccessible(true);
+        assertTrue(((Map<?,?>)f.get(null)).size() <= 4096);
+    }
+}
@@ -0,0 +1,51 @@
+package org.jvnet.localizer;
+
+import junit.framework.TestCase;
+
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class LocaleProviderTest extends TestCase {
+    public void testRunWith() throws Exception {
+        final Locale outside = LocaleProvider.getLocale();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Locale l = LocaleProvider.callWith(Locale.GERMAN, new Callable<Locale>() {
+                public Locale call() throws Exception {
+                    assertEquals(Locale.GERMAN, LocaleProvider.getLocale());
+                    LocaleProvider.runWith(Locale.FRENCH, new Runnable() {
+                        public void run() {
+                            assertEquals(Locale.FRENCH, LocaleProvider.getLocale());
+                        }
+                    });
+                    assertEquals("schlichter Text", ResourceBundleHolder.get(ResourceBundleHolderTest.class).format("literal"));
+
+                    // other threads don't see it unless the task is wrapped
+                    assertEquals(outside, executor.submit(new Callable<Locale>() {
+                        public Locale call() {
+                            return LocaleProvider.getLocale();
+                        }
+                    }).get());
+                    return executor.submit(LocaleProvider.wrap(new Callable<Locale>() {
+                        public Locale call() {
+                            return LocaleProvider.getLocale();
+                        }
+                    })).get();
+                }
+            });
+            assertEquals(Locale.GERMAN, l);
+            assertEquals(outside, LocaleProvider.getLocale());
+
+            // nothing is left behind in the pooled thread
+            assertEquals(outside, executor.submit(new Callable<Locale>() {
+                public Locale call() {
+                    return LocaleProvider.getLocale();
+                }
+            }).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -2,6 +2,10 @@ package org.jvnet.localizer;
 
 import junit.framework.TestCase;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Locale;
 
 public class LocalizableTest extends TestCase {
@@ -12,4 +16,108 @@ public class LocalizableTest extends TestCase {
         Localizable localizable = new Localizable(holder, "arg", (Object) null);
         assertEquals("arg: null", localizable.toString(Locale.ENGLISH));
     }
+
+    public void testAppendTo() throws Exception {
+        ResourceBundleHolder holder = ResourceBundleHolder.get(LocalizableTest.class);
+
+        StringBuilder out = new StringBuilder("> ");
+        new Localizable(holder, "arg", 42).appendTo(out, Locale.ENGLISH);
+        assertEquals("> arg: 42", out.toString());
+    }
+
+    public void testArgumentsAreConvertedLazily() throws Exception {
+        ResourceBundleHolder holder = ResourceBundleHolder.get(LocalizableTest.class);
+
+        final int[] calls = new int[1];
+        Object arg = new Object() {
+            @Override
+            public String toString() {
+                calls[0]++;
+                return "custom";
+            }
+        };
+        Localizable localizable = new Localizable(holder, "arg", arg);
+        assertEquals(0, calls[0]);
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(buf);
+        out.writeObject(localizable);
+        out.close();
+        assertEquals(1, calls[0]);
+
+        Localizable copy = (Localizable)new ObjectInputStream(new ByteArrayInputStream(buf.toByteArray())).readObject();
+        assertEquals("arg: custom", copy.toString(Locale.ENGLISH));
+        assertEquals("arg", copy.getKey());
+        assertEquals(1, calls[0]);
+    }
+
+    public void testMemoizing() throws Exception {
+        ResourceBundleHolder holder = ResourceBundleHolder.get(LocalizableTest.class);
+        Localizable.setMemoizing(true);
+        try {
+            Localizable localizable = new Localizable(holder, "arg", "x");
+            String s = localizable.toString(Locale.ENGLISH);
+            assertEquals("arg: x", s);
+            assertSame(s, localizable.toString(Locale.ENGLISH));
+            StringBuilder out = new StringBuilder();
+            localizable.appendTo(out, Locale.ENGLISH);
+            assertEquals(s, out.toString());
+
+            // reloading the bundles makes it render again
+            holder.reload("LocalizableTest.properties");
+            assertNotSame(s, localizable.toString(Locale.ENGLISH));
+            assertEquals(s, localizable.toString(Locale.ENGLISH));
+
+            // other arguments might render differently each time
+            localizable = new Localizable(holder, "arg", new StringBuilder("x"));
+            assertNotSame(localizable.toString(Locale.ENGLISH), localizable.toString(Locale.ENGLISH));
+        } finally {
+            Localizable.setMemoizing(false);
+        }
+    }
+
+    public void testReadOldForm() throws Exception {
+        // written by the version that didn't have writeObject
+        ObjectInputStream in = new ObjectInputStream(getClass().getResourceAsStream("LocalizableTest.ser"));
+        assertEquals("arg: 42", ((Localizable)in.readObject()).toString(Locale.ENGLISH));
+        assertEquals("arg: text", ((Localizable)in.readObject()).toString(Locale.ENGLISH));
+        assertEquals("arg: null", ((Localizable)in.readObject()).toString(Locale.ENGLISH));
+    }
+
+    public void testCompactSerialization() throws Exception {
+        ResourceBundleHolder holder = ResourceBundleHolder.get(LocalizableTest.class);
+        Object[] args = {null, "text", 42, 42L, true, 1.5, new Object() {
+            @Override
+            public String toString() {
+                return "custom";
+            }
+        }};
+
+        byte[] usual = serialize(holder, args);
+        Localizable.setCompactSerialization(true);
+        byte[] compact;
+        try {
+            compact = serialize(holder, args);
+        } finally {
+            Localizable.setCompactSerialization(false);
+        }
+        assertTrue(compact.length + " vs " + usual.length, compact.length < usual.length);
+
+        for (byte[] data : new byte[][] {usual, compact}) {
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+            for (Object arg : args) {
+                Localizable l = (Localizable)in.readObject();
+                assertEquals(new Localizable(holder, "arg", arg).toString(Locale.ENGLISH), l.toString(Locale.ENGLISH));
+            }
+        }
+    }
+
+    private static byte[] serialize(ResourceBundleHolder holder, Object[] args) throws Exception {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(buf);
+        for (Object arg : args)
+            out.writeObject(new Localizable(holder, "arg", arg));
+        out.close();
+        return buf.toByteArray();
+    }
 }
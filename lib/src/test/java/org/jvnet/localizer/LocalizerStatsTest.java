@@ -0,0 +1,42 @@
+package org.jvnet.localizer;
+
+import junit.framework.TestCase;
+
+import java.util.Locale;
+import java.util.MissingResourceException;
+
+public class LocalizerStatsTest extends TestCase {
+    @SuppressWarnings("deprecation")        // not to use a cache.
+    public void testCounters() throws Exception {
+        LocalizerStats stats = LocalizerStats.install();
+        try {
+            ResourceBundleHolder.clearCache();
+            ResourceBundleHolder.get(LocalizerStatsTest.class);
+            ResourceBundleHolder.get(LocalizerStatsTest.class);
+            assertEquals(2, stats.getHolderLookups());
+            assertEquals(1, stats.getHolderMisses());
+
+            ResourceBundleHolder h = new ResourceBundleHolder(ResourceBundleHolderTest.class);
+            assertEquals("schlichter Text", h.format(Locale.GERMANY, "literal"));
+            assertEquals("a and b", h.format(Locale.GERMANY, "args", "a", "b"));
+            assertEquals(2, stats.getBundleLoads());
+            assertEquals(Long.valueOf(1), stats.getBundleLoadsByLocale().get("de"));
+            assertEquals(Long.valueOf(1), stats.getBundleLoadsByLocale().get(""));
+            assertTrue(stats.getBytesParsed() > 0);
+            assertEquals(2, stats.getFormatCount());
+
+            try {
+                h.format(Locale.GERMANY, "no-such-key");
+                fail();
+            } catch (MissingResourceException e) {
+                // expected
+            }
+            assertEquals(Long.valueOf(1), stats.getMissingResourcesByHolder().get(ResourceBundleHolderTest.class.getName()));
+
+            stats.reset();
+            assertEquals(0, stats.getFormatCount());
+        } finally {
+            stats.uninstall();
+        }
+    }
+}
@@ -0,0 +1,594 @@
+package org.jvnet.localizer;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ResourceBundleHolderTest extends TestCase {
+    private ResourceBundleHolder holder;
+
+    @Override
+    protected void setUp() {
+        // not when the test is created, since other tests clear the cache
+        holder = ResourceBundleHolder.get(ResourceBundleHolderTest.class);
+    }
+
+    public void testFormatMatchesMessageFormat() {
+        Object[][] args = { {}, {0}, {1, "x"}, {1234, 5}, {null, null} };
+        for (String key : new String[] {"literal", "apostrophes", "quoted", "args", "number", "choice"}) {
+            String pattern = holder.get(Locale.ENGLISH).getString(key);
+            for (Object[] a : args) {
+                assertEquals(key, MessageFormat.format(pattern, a), holder.format(Locale.ENGLISH, key, a));
+                // second time around uses the cached template
+                assertEquals(key, MessageFormat.format(pattern, a), holder.format(Locale.ENGLISH, key, a));
+            }
+        }
+    }
+
+    public void testRegistry() {
+        assertSame(holder, ResourceBundleHolder.get(ResourceBundleHolderTest.class));
+        assertNotSame(holder, ResourceBundleHolder.get(LocalizableTest.class));
+
+        ResourceBundleHolder.clearCache();
+        ResourceBundleHolder fresh = ResourceBundleHolder.get(ResourceBundleHolderTest.class);
+        assertNotSame(holder, fresh);
+        assertSame(fresh, ResourceBundleHolder.get(ResourceBundleHolderTest.class));
+    }
+
+    @SuppressWarnings("deprecation")        // not to use a cache.
+    public void testConcurrentLoadOfSameLocale() throws Exception {
+        // the race is narrow, so give it a number of chances to show up
+        for (int round=0; round<50; round++) {
+            final ResourceBundleHolder h = new ResourceBundleHolder(ResourceBundleHolderTest.class);
+            final ResourceBundle[] results = new ResourceBundle[8];
+            final CountDownLatch start = new CountDownLatch(1);
+            Thread[] threads = new Thread[results.length];
+            for (int i = 0; i < threads.length; i++) {
+                final int n = i;
+                threads[i] = new Thread() {
+                    public void run() {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        results[n] = h.get(Locale.JAPAN);
+                    }
+                };
+                threads[i].start();
+            }
+            start.countDown();
+            for (Thread t : threads)
+                t.join();
+            for (ResourceBundle rb : results)
+                assertSame(results[0], rb);
+            assertSame(results[0], h.get(Locale.ROOT));
+        }
+    }
+
+    @SuppressWarnings("deprecation")        // not to use a cache.
+    public void testFlatten() {
+        ResourceBundle chained = new ResourceBundleHolder(ResourceBundleHolderTest.class).get(Locale.GERMANY);
+        ResourceBundleHolder.setFlatten(true);
+        try {
+            ResourceBundle flat = new ResourceBundleHolder(ResourceBundleHolderTest.class).get(Locale.GERMANY);
+            assertEquals(chained.keySet(), flat.keySet());
+            for (String key : chained.keySet())
+                assertEquals(chained.getString(key), flat.getString(key));
+            assertEquals("schlichter Text", flat.getString("literal"));
+        } finally {
+            ResourceBundleHolder.setFlatten(false);
+        }
+    }
+
+    @SuppressWarnings("deprecation")        // not to use a cache.
+    public void testMissingResourcesAreRemembered() {
+        final List<String> lookups = new ArrayList<String>();
+        ResourceProvider.setProvider(new ResourceProvider() {
+            public URL getResource(String name, Class<?> resourceBundle) {
+                lookups.add(name);
+                return ResourceProvider.DEFAULT.getResource(name, resourceBundle);
+            }
+        });
+        try {
+            ResourceBundleHolder h = new ResourceBundleHolder(ResourceBundleHolder.class);
+            for (int i=0; i<3; i++) {
+                try {
+                    h.get(Locale.ROOT);
+                    fail();
+                } catch (MissingResourceException e) {
+                    // expected
+                }
+            }
+            assertEquals(Arrays.asList("ResourceBundleHolder.properties", "ResourceBundleHolder.properties.xml"), lookups);
+
+            ResourceBundleHolder.clearCache();
+            try {
+                h.get(Locale.ROOT);
+                fail();
+            } catch (MissingResourceException e) {
+                // expected
+            }
+            assertEquals(4, lookups.size());
+        } finally {
+            ResourceProvider.setProvider(ResourceProvider.DEFAULT);
+        }
+    }
+
+    @SuppressWarnings("deprecation")        // not to use a cache.
+    public void testEmbedDefaults() {
+        ResourceBundleHolder h = new ResourceBundleHolder(ResourceBundleHolderTest.class)
+                .embedDefaults("literal\0embedded\0args\0{1} a", "nd {0}\0");
+        assertEquals("embedded", h.format(Locale.ROOT, "literal"));
+        assertEquals("b and a", h.format(Locale.ROOT, "args", "a", "b"));
+        assertEquals("schlichter Text", h.format(Locale.GERMANY, "literal"));
+        assertEquals("b and a", h.format(Locale.GERMANY, "args", "a", "b"));
+        assertSame(h.get(Locale.ROOT), h.get(Locale.FRENCH));
+
+        // empty values, and no messages at all
+        h = new ResourceBundleHolder(ResourceBundleHolder.class).embedDefaults("empty\0\0", "");
+        assertEquals("", h.format(Locale.ROOT, "empty"));
+        assertEquals(0, new ResourceBundleHolder(ResourceBundleHolder.class).embedDefaults().get(Locale.ROOT).keySet().size());
+
+        // no need to have the property file at all
+        h = new ResourceBundleHolder(ResourceBundleHolder.class).embedDefaults("key\0value\0");
+        assertEquals("value", h.format(Locale.GERMANY, "key"));
+
+        // other providers see the real resources
+        ResourceProvider.setProvider(new ResourceProvider() {
+            public URL getResource(String name, Class<?> resourceBundle) {
+                return ResourceProvider.DEFAULT.getResource(name, resourceBundle);
+            }
+        });
+        try {
+            h = new ResourceBundleHolder(ResourceBundleHolderTest.class).embedDefaults("literal\0embedded\0");
+            assertEquals("plain text", h.format(Locale.ROOT, "literal"));
+        } finally {
+            ResourceProvider.setProvider(ResourceProvider.DEFAULT);
+        }
+    }
+
+    @SuppressWarnings("deprecation")        // not to use a cache.
+    public void testKeyOrdinals() throws Exception {
+        ResourceBundleHolder h = new ResourceBundleHolder(ResourceBundleHolderTest.class)
+                .indexKeys("args", "literal", "no-such-key");
+        for (Locale l : new Locale[] {Locale.ROOT, Locale.GERMANY}) {
+            assertEquals(h.format(l, "literal"), h.format(l, 1));
+            assertEquals(h.format(l, "args", "a", "b"), h.format(l, 0, "a", "b"));
+            // second time around comes from the array
+            assertEquals(h.format(l, "args", "c", "d"), h.format(l, 0, "c", "d"));
+            try {
+                h.format(l, 2);
+                fail();
+            } catch (MissingResourceException e) {
+                // expected
+            }
+        }
+
+        StringBuilder buf = new StringBuilder();
+        h.formatTo(buf, 0, "a", "b");
+        assertEquals(h.format(0, "a", "b"), buf.toString());
+    }
+
+    @SuppressWarnings("deprecation")        // not to use a cache.
+    public void testReloading() throws Exception {
+        final File dir = File.createTempFile("bundles", "");
+        dir.delete();
+        dir.mkdir();
+        write(new File(dir, "ResourceBundleHolderTest.properties"), "literal=one");
+
+        ResourceProvider.setProvider(new ResourceProvider() {
+            public URL getResource(String name, Class<?> resourceBundle) {
+                try {
+                    File f = new File(dir, name);
+                    return f.exists() ? f.toURI().toURL() : null;
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        });
+        // bundles loaded before reloading is turned on are watched too
+        ResourceBundleHolder h = new ResourceBundleHolder(ResourceBundleHolderTest.class);
+        assertEquals("one", h.format(Locale.ROOT, "literal"));
+        ResourceBundleHolder.setReloading(true);
+        try {
+            assertEquals("one", h.format(Locale.ROOT, "literal"));
+
+            write(new File(dir, "ResourceBundleHolderTest.properties"), "literal=two\nother=three");
+            awaitFormat(h, Locale.ROOT, "two");
+            assertEquals("two", h.format(Locale.GERMANY, "literal"));
+
+            write(new File(dir, "ResourceBundleHolderTest_de.properties"), "literal=eins");
+            awaitFormat(h, Locale.GERMANY, "eins");
+            assertEquals("two", h.format(Locale.ROOT, "literal"));
+            assertEquals("three", h.format(Locale.GERMANY, "other"));
+        } finally {
+            ResourceBundleHolder.setReloading(false);
+            ResourceProvider.setProvider(ResourceProvider.DEFAULT);
+        }
+    }
+
+    private static void write(File f, String contents) throws IOException {
+        FileOutputStream out = new FileOutputStream(f);
+        try {
+            out.write(contents.getBytes("ISO-8859-1"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void awaitFormat(ResourceBundleHolder h, Locale locale, String expected) throws InterruptedException {
+        for (int i=0; i<100 && !expected.equals(h.format(locale, "literal")); i++)
+            Thread.sleep(100);
+        assertEquals(expected, h.format(locale, "literal"));
+    }
+
+    @SuppressWarnings("deprecation")        // not to use a cache.
+    public void testCacheLimit() {
+        ResourceBundleHolder h = new ResourceBundleHolder(ResourceBundleHolderTest.class);
+        // the root bundle weighs 6, and "de" weighs 1
+        h.setCacheLimit(7);
+        ResourceBundle root = h.get(Locale.ROOT);
+        ResourceBundle de = h.get(Locale.GERMAN);
+        // locales without their own resources don't take up room
+        assertSame(root, h.get(Locale.FRENCH));
+        assertSame(root, h.get(Locale.ITALIAN));
+        assertSame(de, h.get(Locale.GERMANY));
+
+        h.setCacheLimit(6);
+        assertNotSame(de, h.get(Locale.GERMAN));
+        assertEquals("schlichter Text", h.format(Locale.GERMAN, "literal"));
+        // the root bundle stays, no matter what
+        h.setCacheLimit(1);
+        assertSame(root, h.get(Locale.ROOT));
+        assertEquals("plain text", h.format(Locale.FRENCH, "literal"));
+    }
+
+    public void testCacheLimitBelowOneBundle() {
+        ResourceBundleHolder h = new ResourceBundleHolder(ResourceBundleHolderTest.class);
+        // not even the root bundle fits, but what's just been loaded stays until something else is
+        h.setCacheLimit(1);
+        ResourceBundle de = h.get(Locale.GERMAN);
+        assertSame(de, h.get(Locale.GERMAN));
+        assertSame(de, h.get(Locale.GERMANY));
+        assertEquals("schlichter Text", h.format(Locale.GERMAN, "literal"));
+        assertEquals("plain text", h.format(Locale.FRENCH, "literal"));
+    }
+
+    @SuppressWarnings("deprecation")        // not to use a cache.
+    public void testLocaleResolution() {
+        final List<String> lookups = new ArrayList<String>();
+        ResourceProvider.setProvider(new ResourceProvider() {
+            public URL getResource(String name, Class<?> resourceBundle) {
+                lookups.add(name);
+                return ResourceProvider.DEFAULT.getResource(name, resourceBundle);
+            }
+        });
+        try {
+            ResourceBundleHolder h = new ResourceBundleHolder(ResourceBundleHolderTest.class);
+            ResourceBundle de = h.get(new Locale("de", "AT"));
+            assertEquals("schlichter Text", de.getString("literal"));
+            assertEquals(Arrays.asList(
+                    "ResourceBundleHolderTest_de_AT.properties", "ResourceBundleHolderTest_de_AT.properties.xml",
+                    "ResourceBundleHolderTest_de.properties", "ResourceBundleHolderTest.properties"), lookups);
+
+            lookups.clear();
+            assertSame(de, h.get(new Locale("de", "AT")));
+            assertSame(de, h.get(new Locale("de", "AT", "POSIX")));
+            assertSame(de, h.get(Locale.GERMAN));
+            // the variant is looked for, but not again
+            assertEquals(Arrays.asList(
+                    "ResourceBundleHolderTest_de_AT_POSIX.properties", "ResourceBundleHolderTest_de_AT_POSIX.properties.xml"), lookups);
+            assertSame(de, h.get(new Locale("de", "AT", "POSIX")));
+            assertEquals(2, lookups.size());
+
+            // resolving a locale also resolves the locales it falls back to
+            ResourceBundleHolder h2 = new ResourceBundleHolder(ResourceBundleHolderTest.class);
+            h2.get(new Locale("de", "AT", "POSIX"));
+            lookups.clear();
+            assertEquals("schlichter Text", h2.get(new Locale("de", "AT")).getString("literal"));
+            assertEquals(0, lookups.size());
+        } finally {
+            ResourceProvider.setProvider(ResourceProvider.DEFAULT);
+        }
+    }
+
+    public void testDeduplication() throws Exception {
+        long plain = retainedChars(loadCorpus());
+        ResourceBundleHolder.setDeduplicating(true);
+        long deduplicated;
+        try {
+            deduplicated = retainedChars(loadCorpus());
+        } finally {
+            ResourceBundleHolder.setDeduplicating(false);
+        }
+        assertTrue(deduplicated + " vs " + plain, deduplicated * 10 < plain);
+    }
+
+    /**
+     * Loads a synthetic set of bundles of 100 holders in 6 locales, where the holders share common messages,
+     * and the translations leave some of them untranslated.
+     */
+    private static List<ResourceBundle> loadCorpus() throws IOException {
+        String[] locales = {"", "de", "fr", "ja", "pt_BR", "zh_CN"};
+        List<ResourceBundle> bundles = new ArrayList<ResourceBundle>();
+        for (int h=0; h<100; h++) {
+            for (String l : locales) {
+                StringBuilder props = new StringBuilder();
+                props.append("OK=OK\nCancel=").append(l.equals("de") ? "Abbrechen" : "Cancel").append('\n');
+                props.append("Name=").append(l.equals("fr") ? "Nom" : "Name").append('\n');
+                props.append("Description=Describes what this thing does in a longer sentence\n");
+                props.append("Title=Holder ").append(h).append('\n');
+                bundles.add(new ResourceBundleHolder.ResourceBundleImpl(new ByteArrayInputStream(props.toString().getBytes("ISO-8859-1"))));
+            }
+        }
+        return bundles;
+    }
+
+    /**
+     * Sums the lengths of the distinct {@link String} instances that the bundles keep,
+     * including those kept by their parsed templates.
+     */
+    private static long retainedChars(List<ResourceBundle> bundles) throws Exception {
+        Field templates = ResourceBundleHolder.ResourceBundleImpl.class.getDeclaredField("templates");
+        Field pattern = MessageTemplate.class.getDeclaredField("pattern");
+        Field literal = MessageTemplate.class.getDeclaredField("literal");
+        templates.setAccessible(true);
+        pattern.setAccessible(true);
+        literal.setAccessible(true);
+
+        Set<String> seen = Collections.newSetFromMap(new IdentityHashMap<String,Boolean>());
+        long chars = 0;
+        for (ResourceBundle b : bundles) {
+            List<String> strings = new ArrayList<String>();
+            for (String key : b.keySet()) {
+                strings.add(key);
+                strings.add(b.getString(key));
+            }
+            for (Map.Entry<?,?> e : ((Map<?,?>)templates.get(b)).entrySet()) {
+                strings.add((String)e.getKey());
+                strings.add((String)pattern.get(e.getValue()));
+                strings.add((String)literal.get(e.getValue()));
+            }
+            for (String str : strings) {
+                if (str!=null && seen.add(str))
+                    chars += str.length();
+            }
+        }
+        return chars;
+    }
+
+    @SuppressWarnings("deprecation")        // not to use a cache.
+    public void testMissingResourcesBounded() throws Exception {
+        ResourceBundleHolder h = new ResourceBundleHolder(ResourceBundleHolderTest.class);
+        // bogus locales, such as those from a hostile Accept-Language header
+        for (int i=0; i<2000; i++)
+            assertEquals("plain text", h.format(new Locale("x"+i), "literal"));
+
+        Field f = ResourceBundleHolder.class.getDeclaredField("resources");
+        f.setAccessible(true);
+        Object resources = f.get(h);
+        Field missing = resources.getClass().getDeclaredField("missing");
+        missing.setAccessible(true);
+        assertTrue(((Set<?>)missing.get(resources)).size() <= 512);
+    }
+
+    @SuppressWarnings("deprecation")        // not to use a cache.
+    public void testFootprint() throws Exception {
+        ResourceBundleHolder h = new ResourceBundleHolder(ResourceBundleHolderTest.class);
+        h.get(Locale.ROOT);
+        h.get(Locale.GERMANY);
+
+        Map<Locale,BundleFootprint> footprint = new HashMap<Locale,BundleFootprint>();
+        for (BundleFootprint f : h.getFootprint())
+            footprint.put(f.getLocale(), f);
+        assertEquals(6, footprint.get(Locale.ROOT).getKeyCount());
+        assertFalse(footprint.get(Locale.ROOT).isAlias());
+        assertTrue(footprint.get(Locale.ROOT).getEstimatedBytes() > footprint.get(Locale.GERMAN).getEstimatedBytes());
+        assertEquals(1, footprint.get(Locale.GERMAN).getKeyCount());
+        assertEquals(Locale.GERMAN, footprint.get(Locale.GERMANY).getAliasOf());
+        assertEquals(0, footprint.get(Locale.GERMANY).getEstimatedBytes());
+        // not tracked without a cache limit
+        assertEquals(-1, footprint.get(Locale.GERMAN).getLastUsed());
+
+        // what's reported is what each holder has been used for, even though they share what they know about locales
+        Locale austria = new Locale("de", "AT"), posix = new Locale("de", "AT", "POSIX");
+        ResourceBundleHolder a = new ResourceBundleHolder(ResourceBundleHolderTest.class);
+        ResourceBundleHolder b = new ResourceBundleHolder(ResourceBundleHolderTest.class);
+        b.get(austria);
+        b.get(posix);
+        a.get(posix);
+        assertEquals(new HashSet<Locale>(Arrays.asList(Locale.ROOT, Locale.GERMAN, posix)), locales(a.getFootprint()));
+        assertEquals(new HashSet<Locale>(Arrays.asList(Locale.ROOT, Locale.GERMAN, austria, posix)), locales(b.getFootprint()));
+
+        h.setCacheLimit(1000);
+        long start = System.currentTimeMillis();
+        h.get(Locale.GERMANY);
+        for (BundleFootprint f : h.getFootprint()) {
+            if (f.getLocale().equals(Locale.GERMAN))
+                assertTrue(f.getLastUsed() >= start-1000);
+        }
+
+        File dump = File.createTempFile("footprint", ".tsv");
+        try {
+            ResourceBundleHolder.dumpFootprint(dump);
+            BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(dump), "UTF-8"));
+            try {
+                assertTrue(r.readLine().startsWith("#owner"));
+                boolean found = false;
+                String line;
+                while ((line = r.readLine()) != null)
+                    found |= line.startsWith(ResourceBundleHolderTest.class.getName() + "\tde_DE\talias of de\t");
+                assertTrue(found);
+            } finally {
+                r.close();
+            }
+        } finally {
+            dump.delete();
+        }
+    }
+
+    private static Set<Locale> locales(List<BundleFootprint> footprint) {
+        Set<Locale> r = new HashSet<Locale>();
+        for (BundleFootprint f : footprint)
+            r.add(f.getLocale());
+        return r;
+    }
+
+    public void testPreload() throws Exception {
+        List<Class<?>> classes = ResourceBundleHolder.findHolderClasses(getClass().getClassLoader());
+        assertEquals(Arrays.<Class<?>>asList(LocalizableTest.class, ResourceBundleHolderTest.class), classes);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<ResourceBundle>> loads = ResourceBundleHolder.preload(classes, Arrays.asList(Locale.ROOT, Locale.GERMANY), executor);
+            assertEquals(4, loads.size());
+            for (Future<ResourceBundle> f : loads)
+                assertNotNull(f.get());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals("schlichter Text", ResourceBundleHolder.get(ResourceBundleHolderTest.class).format(Locale.GERMANY, "literal"));
+    }
+
+    public void testFastPathAfterClearCache() throws Exception {
+        Executor executor = new Executor() {
+            public void execute(Runnable command) {
+                fail("should have been loaded already");
+            }
+        };
+        ResourceBundleHolder h = new ResourceBundleHolder(ResourceBundleHolderTest.class);
+        ResourceBundle de = h.get(Locale.GERMANY);
+        assertSame(de, h.getAsync(Locale.GERMANY, executor).get());
+
+        // the bundles are still there, but what's known about the resources is forgotten until they are used again
+        ResourceBundleHolder.clearCache();
+        assertSame(de, h.get(Locale.GERMANY));
+        Future<ResourceBundle> f = h.getAsync(Locale.GERMANY, executor);
+        assertTrue(f.isDone());
+        assertSame(de, f.get());
+    }
+
+    public void testGetAsync() throws Exception {
+        final List<Runnable> queue = new ArrayList<Runnable>();
+        Executor executor = new Executor() {
+            public void execute(Runnable command) {
+                queue.add(command);
+            }
+        };
+        final List<Object> results = new ArrayList<Object>();
+        Callback<Object> callback = new Callback<Object>() {
+            public void done(Object result, Throwable failure) {
+                results.add(failure!=null ? failure : result);
+            }
+        };
+
+        ResourceBundleHolder h = new ResourceBundleHolder(ResourceBundleHolderTest.class);
+        Future<ResourceBundle> f = h.getAsync(Locale.GERMANY, executor, callback);
+        // concurrent requests share the same load, and nothing happens on the calling thread
+        Future<ResourceBundle> g = h.getAsync(Locale.GERMANY, executor, callback);
+        assertNotSame(f, g);
+        Future<String> s = h.formatAsync(executor, Locale.GERMANY, "literal", callback);
+        assertFalse(f.isDone());
+        assertFalse(s.isDone());
+        assertTrue(results.isEmpty());
+        assertEquals(1, queue.size());
+
+        queue.remove(0).run();
+        assertEquals("schlichter Text", f.get().getString("literal"));
+        assertEquals("schlichter Text", s.get());
+        assertSame(f.get(), g.get());
+        assertEquals(Arrays.<Object>asList(f.get(), f.get(), "schlichter Text"), results);
+        results.clear();
+
+        // once loaded, the results are there right away
+        f = h.getAsync(Locale.GERMANY, executor, callback);
+        assertTrue(f.isDone());
+        assertSame(h.get(Locale.GERMANY), f.get());
+        s = h.formatAsync(executor, Locale.GERMANY, "args", callback, "a", "b");
+        assertTrue(s.isDone());
+        assertEquals("a and b", s.get());
+        assertEquals(Arrays.<Object>asList(f.get(), "a and b"), results);
+        assertTrue(queue.isEmpty());
+
+        // failures are handed over too
+        results.clear();
+        s = h.formatAsync(executor, Locale.GERMANY, "no-such-key", callback);
+        assertTrue(s.isDone());
+        assertTrue(results.get(0) instanceof MissingResourceException);
+        try {
+            s.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(results.get(0), e.getCause());
+        }
+    }
+
+    public void testGetAsyncCancel() throws Exception {
+        final List<Runnable> queue = new ArrayList<Runnable>();
+        Executor executor = new Executor() {
+            public void execute(Runnable command) {
+                queue.add(command);
+            }
+        };
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        ResourceBundleHolder h = new ResourceBundleHolder(ResourceBundleHolderTest.class);
+        Future<ResourceBundle> f = h.getAsync(Locale.GERMANY, executor, new Callback<ResourceBundle>() {
+            public void done(ResourceBundle rb, Throwable failure) {
+                failures.add(failure);
+            }
+        });
+        Future<ResourceBundle> g = h.getAsync(Locale.GERMANY, executor);
+
+        // cancelling one doesn't cancel the load for the other
+        assertTrue(f.cancel(true));
+        assertTrue(failures.get(0) instanceof CancellationException);
+        assertFalse(g.isDone());
+        assertEquals(1, queue.size());
+        // nor for those that come later
+        Future<ResourceBundle> k = h.getAsync(Locale.GERMANY, executor);
+        assertEquals(1, queue.size());
+
+        queue.remove(0).run();
+        assertTrue(f.isCancelled());
+        assertSame(h.get(Locale.GERMANY), g.get());
+        assertSame(h.get(Locale.GERMANY), k.get());
+        assertEquals(1, failures.size());
+
+        // the finished load isn't handed out again, even if it failed
+        ResourceBundleHolder missing = new ResourceBundleHolder(Object.class);
+        f = missing.getAsync(Locale.GERMANY, executor);
+        queue.remove(0).run();
+        assertTrue(f.isDone());
+        missing.getAsync(Locale.GERMANY, executor);
+        assertEquals(1, queue.size());
+    }
+}
@@ -0,0 +1,92 @@
+package org.jvnet.localizer;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.InvalidPropertiesFormatException;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * {@link XmlProperties} should read what {@link Properties#loadFromXML(java.io.InputStream)} reads,
+ * and reject what it rejects.
+ */
+public class XmlPropertiesTest extends TestCase {
+    private static final String PROLOG = "<?xml version='1.0' encoding='UTF-8'?>\n"
+            + "<!DOCTYPE properties SYSTEM 'http://java.sun.com/dtd/properties.dtd'>\n";
+
+    public void testEntities() throws Exception {
+        assertSame(PROLOG + "<properties>"
+                + "<entry key='a&amp;b'>x &lt; y &gt; z &quot;q&quot; &apos;s&apos;</entry>"
+                + "<entry key='num'>&#65;&#x42;&#x263A;</entry>"
+                + "</properties>");
+    }
+
+    public void testCData() throws Exception {
+        assertSame(PROLOG + "<properties>"
+                + "<entry key='html'><![CDATA[<b>{0}</b> & co]]></entry>"
+                + "<entry key='mixed'>before <![CDATA[<i>]]> after</entry>"
+                + "</properties>");
+    }
+
+    public void testComments() throws Exception {
+        assertSame(PROLOG + "<!-- before -->\n<properties>\n"
+                + "  <comment>About these messages</comment>\n"
+                + "  <!-- between -->\n"
+                + "  <entry key='a'>one<!-- inside -->two</entry>\n"
+                + "  <entry key='empty'/>\n"
+                + "  <entry key='spaces'>  padded  </entry>\n"
+                + "</properties>\n<!-- after -->");
+    }
+
+    public void testUndefinedEntity() throws Exception {
+        // Properties drops them rather than failing
+        assertSame(PROLOG + "<properties><entry key='a'>x&nbsp;y</entry></properties>");
+    }
+
+    public void testWithoutDoctype() throws Exception {
+        assertRejected("<properties><entry key='a'>b</entry></properties>");
+    }
+
+    public void testNestedElement() throws Exception {
+        assertRejected(PROLOG + "<properties><entry key='a'>x<b>y</b></entry></properties>");
+    }
+
+    public void testMissingKey() throws Exception {
+        assertRejected(PROLOG + "<properties><entry>value</entry></properties>");
+    }
+
+    public void testMalformed() throws Exception {
+        assertRejected(PROLOG + "<properties><entry key='a'>value</properties>");
+        assertRejected(PROLOG + "<properties><entry key='a'>value</entry>");
+        assertRejected(PROLOG + "<properties><entry key='a'>value</entri></properties>");
+        assertRejected("not xml at all");
+    }
+
+    private static void assertSame(String xml) throws IOException {
+        Properties expected = new Properties();
+        expected.loadFromXML(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+        Map<String,String> map = new HashMap<String,String>();
+        for (String key : expected.stringPropertyNames())
+            map.put(key, expected.getProperty(key));
+
+        assertEquals(map, XmlProperties.load(new ByteArrayInputStream(xml.getBytes("UTF-8"))));
+    }
+
+    private static void assertRejected(String xml) throws IOException {
+        try {
+            new Properties().loadFromXML(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+            fail("Properties accepted "+xml);
+        } catch (InvalidPropertiesFormatException e) {
+            // expected
+        }
+        try {
+            XmlProperties.load(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+            fail("XmlProperties accepted "+xml);
+        } catch (InvalidPropertiesFormatException e) {
+            // expected
+        }
+    }
+}
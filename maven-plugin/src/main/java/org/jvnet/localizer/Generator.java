@@ -26,6 +26,7 @@ package org.jvnet.localizer;
 import com.sun.codemodel.JClassAlreadyExistsException;
 import com.sun.codemodel.JDefinedClass;
 import com.sun.codemodel.JExpr;
+import com.sun.codemodel.JExpression;
 import com.sun.codemodel.JFieldVar;
 import com.sun.codemodel.JInvocation;
 import com.sun.codemodel.JMethod;
@@ -36,6 +37,7 @@ import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 
 import java.io.File;
+import java.io.IOException;
 import java.text.DateFormat;
 import java.text.Format;
 import java.text.MessageFormat;
@@ -46,6 +48,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.TreeSet;
 
 /**
  * @author Kohsuke Kawaguchi
@@ -83,8 +86,29 @@ public class Generator extends CodeModelGenerator implements ClassGenerator {
             // [RESULT]
             // private static final ResourceBundleHolder holder = BundleHolder.get(Messages.class);
 
-            JFieldVar holder = c.field(JMod.PRIVATE | JMod.STATIC | JMod.FINAL, ResourceBundleHolder.class, "holder",
-                    cm.ref(ResourceBundleHolder.class).staticInvoke("get").arg(c.dotclass()) );
+            JInvocation init = cm.ref(ResourceBundleHolder.class).staticInvoke("get").arg(c.dotclass());
+            if (embedDefaults) {
+                List<String> messages = encodeMessages(props);
+                if (messages!=null) {
+                    // [RESULT]
+                    // ... = BundleHolder.get(Messages.class).embedDefaults("key\0value\0key\0value\0...", ...);
+                    init = init.invoke("embedDefaults");
+                    for (String m : messages)
+                        init.arg(JExpr.lit(m));
+                }
+            }
+            // keys are numbered in their sorted order
+            Map<String,Integer> ordinals = new HashMap<String,Integer>();
+            if (keyOrdinals) {
+                // [RESULT]
+                // ... = BundleHolder.get(Messages.class).indexKeys("key1", "key2", ...);
+                init = init.invoke("indexKeys");
+                for (String key : new TreeSet<String>(props.stringPropertyNames())) {
+                    ordinals.put(key, ordinals.size());
+                    init.arg(key);
+                }
+            }
+            JFieldVar holder = c.field(JMod.PRIVATE | JMod.STATIC | JMod.FINAL, ResourceBundleHolder.class, "holder", init);
             holder.javadoc().add("The resource bundle reference");
 
 
@@ -98,65 +122,50 @@ public class Generator extends CodeModelGenerator implements ClassGenerator {
                 // generate the default format method
                 List<JVar> args = new ArrayList<JVar>();
                 JMethod m = c.method(JMod.PUBLIC | JMod.STATIC, cm.ref(String.class), toJavaIdentifier(key));
-                for( int i=0; i<formats.length; i++ ) {
-                    String argName = String.format("arg%d", i);
-                    args.add(m.param(inferType(formats[i]), argName));
-                    if (formats[i] instanceof NumberFormat) {
-                        params.put(argName, String.format("%s format parameter, {@code {%d}}, a number.",
-                                positionalName(i), i));
-                    } else if (formats[i] instanceof DateFormat) {
-                        params.put(argName,
-                                String.format("%s format parameter, {@code {%d}}, a {@link java.util.Date}.",
-                                        positionalName(i), i));
-                    } else {
-                        params.put(argName, String.format(
-                                "%s format parameter, {@code {%d}}, as {@link String#valueOf(Object)}.",
-                                positionalName(i), i));
-                    }
-                }
+                addParams(m, formats, args, params);
 
-                JInvocation inv = holder.invoke("format").arg(key);
+                JExpression id = keyOrdinals ? JExpr.lit(ordinals.get(key)) : JExpr.lit(key);
+                JInvocation inv = holder.invoke("format").arg(id);
                 for (JVar arg : args)
                     inv.arg(arg);
                 m.body()._return(inv);
 
-                m.javadoc().add(WordUtils.wrap(String.format("Key %s: %s.", code(key), code(value)), 70));
-                for (Map.Entry<String,String> p: params.entrySet()) {
-                    m.javadoc().addParam(p.getKey()).add(p.getValue());
+                addJavadoc(m, key, value, params);
+
+                if (appendableOverloads) {
+                    // generate the overload that writes to Appendable
+                    args.clear();
+                    params.clear();
+                    m = c.method(JMod.PUBLIC | JMod.STATIC, cm.VOID, toJavaIdentifier(key));
+                    JVar out = m.param(Appendable.class, "out");
+                    m._throws(IOException.class);
+                    addParams(m, formats, args, params);
+
+                    inv = holder.invoke("formatTo").arg(out).arg(id);
+                    for (JVar arg : args)
+                        inv.arg(arg);
+                    m.body().add(inv);
+
+                    m.javadoc().add(WordUtils.wrap(String.format("Key %s: %s.", code(key), code(value)), 70));
+                    m.javadoc().addParam(out).add("Where the formatted message is written to.");
+                    for (Map.Entry<String,String> p: params.entrySet()) {
+                        m.javadoc().addParam(p.getKey()).add(p.getValue());
+                    }
+                    m.javadoc().addThrows(IOException.class).add("If writing to {@code out} fails.");
                 }
-                m.javadoc().addReturn().add(WordUtils.wrap(code(value), 70));
 
                 // generate localizable factory
                 args.clear();
                 params.clear();
                 m = c.method(JMod.PUBLIC | JMod.STATIC, cm.ref(Localizable.class), '_'+toJavaIdentifier(key));
-                for( int i=0; i<formats.length; i++ ) {
-                    String argName = String.format("arg%d", i);
-                    args.add(m.param(inferType(formats[i]), argName));
-                    if (formats[i] instanceof NumberFormat) {
-                        params.put(argName, String.format("%s format parameter, {@code {%d}}, a number.",
-                                positionalName(i), i));
-                    } else if (formats[i] instanceof DateFormat) {
-                        params.put(argName,
-                                String.format("%s format parameter, {@code {%d}}, a {@link java.util.Date}.",
-                                        positionalName(i), i));
-                    } else {
-                        params.put(argName, String.format(
-                                "%s format parameter, {@code {%d}}, as {@link String#valueOf(Object)}.",
-                                positionalName(i), i));
-                    }
-                }
+                addParams(m, formats, args, params);
 
                 inv = JExpr._new(cm.ref(Localizable.class)).arg(holder).arg(key);
                 for (JVar arg : args)
                     inv.arg(arg);
                 m.body()._return(inv);
 
-                m.javadoc().add(WordUtils.wrap(String.format("Key %s: %s.", code(key), code(value)), 70));
-                for (Map.Entry<String,String> p: params.entrySet()) {
-                    m.javadoc().addParam(p.getKey()).add(p.getValue());
-                }
-                m.javadoc().addReturn().add(WordUtils.wrap(code(value), 70));
+                addJavadoc(m, key, value, params);
             }
 
         } catch (JClassAlreadyExistsException e) {
@@ -164,6 +173,71 @@ public class Generator extends CodeModelGenerator implements ClassGenerator {
         }
     }
 
+    /**
+     * Encodes the messages in the form that {@code ResourceBundleHolder.embedDefaults} takes,
+     * where each key and value is terminated by '\0', split into strings that each fit in a class file constant.
+     * Passing them as a few string constants, instead of an array of them, keeps the class initializer small
+     * no matter how many messages there are.
+     *
+     * @return
+     *      null if the messages can't be encoded, because they contain '\0'.
+     */
+    private static List<String> encodeMessages(Properties props) {
+        StringBuilder buf = new StringBuilder();
+        for (String key : new TreeSet<String>(props.stringPropertyNames())) {
+            String value = props.getProperty(key);
+            if (key.indexOf('\0')>=0 || value.indexOf('\0')>=0)
+                return null;
+            buf.append(key).append('\0').append(value).append('\0');
+        }
+
+        List<String> r = new ArrayList<String>();
+        int start = 0;
+        while (start<buf.length()) {
+            int end = Math.min(buf.length(), start+MAX_CONSTANT_CHARS);
+            if (end<buf.length() && Character.isHighSurrogate(buf.charAt(end-1)))
+                end--;  // don't split a surrogate pair
+            r.add(buf.substring(start, end));
+            start = end;
+        }
+        return r;
+    }
+
+    /**
+     * A string constant takes up to 65535 bytes in the class file, and each character takes up to 3 bytes.
+     */
+    private static final int MAX_CONSTANT_CHARS = 65535/3;
+
+    /**
+     * Adds a parameter for each format argument, along with its description.
+     */
+    private void addParams(JMethod m, Format[] formats, List<JVar> args, Map<String,String> params) {
+        for( int i=0; i<formats.length; i++ ) {
+            String argName = String.format("arg%d", i);
+            args.add(m.param(inferType(formats[i]), argName));
+            if (formats[i] instanceof NumberFormat) {
+                params.put(argName, String.format("%s format parameter, {@code {%d}}, a number.",
+                        positionalName(i), i));
+            } else if (formats[i] instanceof DateFormat) {
+                params.put(argName,
+                        String.format("%s format parameter, {@code {%d}}, a {@link java.util.Date}.",
+                                positionalName(i), i));
+            } else {
+                params.put(argName, String.format(
+                        "%s format parameter, {@code {%d}}, as {@link String#valueOf(Object)}.",
+                        positionalName(i), i));
+            }
+        }
+    }
+
+    private void addJavadoc(JMethod m, String key, String value, Map<String,String> params) {
+        m.javadoc().add(WordUtils.wrap(String.format("Key %s: %s.", code(key), code(value)), 70));
+        for (Map.Entry<String,String> p: params.entrySet()) {
+            m.javadoc().addParam(p.getKey()).add(p.getValue());
+        }
+        m.javadoc().addReturn().add(WordUtils.wrap(code(value), 70));
+    }
+
     private String code(String value) {
         return String.format("{@code %s}", value);
     }
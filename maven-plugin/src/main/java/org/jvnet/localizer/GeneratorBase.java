@@ -23,17 +23,28 @@
  */
 package org.jvnet.localizer;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.text.DateFormat;
 import java.text.Format;
 import java.text.MessageFormat;
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.regex.Pattern;
 
 import org.apache.tools.ant.DirectoryScanner;
@@ -46,6 +57,19 @@ public abstract class GeneratorBase implements ClassGenerator {
     protected final Pattern keyPattern;
     protected final boolean strictTypes;
     protected final boolean accessModifierAnnotations;
+    protected final boolean appendableOverloads;
+    protected final boolean embedDefaults;
+    protected final boolean keyOrdinals;
+
+    /**
+     * Names of all the classes for the processed property files, including those that were up to date.
+     */
+    private final Set<String> classNames = new TreeSet<String>();
+
+    /**
+     * All the processed property files, keyed by their resource names.
+     */
+    private final Map<String,File> propertyFiles = new TreeMap<String,File>();
 
     public GeneratorBase(GeneratorConfig config) {
         outputDirectory = config.getOutputDirectory();
@@ -54,6 +78,9 @@ public abstract class GeneratorBase implements ClassGenerator {
         keyPattern = config.getKeyPattern();
         strictTypes = config.isStrictTypes();
         accessModifierAnnotations = config.isAccessModifierAnnotations();
+        appendableOverloads = config.isAppendableOverloads();
+        embedDefaults = config.isEmbedDefaults();
+        keyOrdinals = config.isKeyOrdinals();
     }
 
     public void generate(File baseDir, DirectoryScanner ds, FileFilter filter) throws IOException {
@@ -94,6 +121,8 @@ public abstract class GeneratorBase implements ClassGenerator {
 
     public void generate(File propertyFile, String relPath) throws IOException {
         String className = toClassName(relPath);
+        classNames.add(className);
+        propertyFiles.put(relPath.replace(File.separatorChar,'/'), propertyFile);
 
         // up to date check
         File sourceFile = new File(outputDirectory,className.replace('.','/')+".java");
@@ -125,6 +154,25 @@ public abstract class GeneratorBase implements ClassGenerator {
 
     abstract protected void generateImpl(String className, Properties props);
 
+    /**
+     * Finds the property files next to the given one that belong to the same bundle,
+     * such as "Messages_de.properties" for "Messages.properties". The given file itself is included.
+     */
+    protected List<File> getVariants(File propertyFile) {
+        String name = propertyFile.getName();
+        Pattern variant = Pattern.compile(Pattern.quote(name.substring(0, name.indexOf(".properties")))
+                + "(_[^.]+)?\\.properties(\\.xml)?");
+
+        List<File> r = new ArrayList<File>();
+        File[] siblings = propertyFile.getParentFile().listFiles();
+        if (siblings!=null) {
+            for (File s : siblings)
+                if (variant.matcher(s.getName()).matches())
+                    r.add(s);
+        }
+        return r;
+    }
+
     protected String toClassName(String relPath) {
         if (relPath.endsWith(".xml")) {
             relPath = relPath.substring(0,relPath.length()-".properties.xml".length());
@@ -163,6 +211,68 @@ public abstract class GeneratorBase implements ClassGenerator {
         return new MessageFormat(formatString).getFormatsByArgumentIndex().length;
     }
 
+    /**
+     * Gets the names of all the classes for the property files processed so far,
+     * including those that didn't need to be regenerated.
+     */
+    public Set<String> getClassNames() {
+        return Collections.unmodifiableSet(classNames);
+    }
+
+    /**
+     * Writes {@link #getClassNames()} as {@link ResourceBundleHolder#HOLDER_INDEX} under the given directory,
+     * so that {@link ResourceBundleHolder#findHolderClasses(ClassLoader)} can find them.
+     */
+    public void writeHolderIndex(File dir) throws IOException {
+        File index = new File(dir, ResourceBundleHolder.HOLDER_INDEX);
+        index.getParentFile().mkdirs();
+        Writer w = new OutputStreamWriter(new FileOutputStream(index), "UTF-8");
+        try {
+            for (String name : classNames)
+                w.write(name+"\n");
+        } finally {
+            w.close();
+        }
+    }
+
+    /**
+     * Writes all the processed property files, along with their localized variants,
+     * as {@link BundleArchive#RESOURCE} under the given directory, so that they can be loaded
+     * at runtime without looking up each of them through the class loader.
+     */
+    public void writeBundleArchive(File dir) throws IOException {
+        Map<String,byte[]> resources = new TreeMap<String,byte[]>();
+        for (Map.Entry<String,File> e : propertyFiles.entrySet()) {
+            File f = e.getValue();
+            String prefix = e.getKey().substring(0, e.getKey().length()-f.getName().length());
+            for (File v : getVariants(f))
+                resources.put(prefix+v.getName(), readFully(v));
+        }
+
+        File archive = new File(dir, BundleArchive.RESOURCE);
+        archive.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(archive);
+        try {
+            BundleArchive.write(resources, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] readFully(File f) throws IOException {
+        FileInputStream in = new FileInputStream(f);
+        try {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            byte[] b = new byte[8192];
+            int n;
+            while ((n=in.read(b))>=0)
+                buf.write(b,0,n);
+            return buf.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
     protected File getOutputDirectory() {
         return outputDirectory;
     }
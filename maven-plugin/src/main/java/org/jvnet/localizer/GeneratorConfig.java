@@ -11,6 +11,9 @@ public class GeneratorConfig {
     private Pattern keyPattern;
     private boolean strictTypes;
     private boolean accessModifierAnnotations;
+    private boolean appendableOverloads;
+    private boolean embedDefaults;
+    private boolean keyOrdinals;
 
     public boolean isAccessModifierAnnotations() {
         return accessModifierAnnotations;
@@ -20,6 +23,30 @@ public class GeneratorConfig {
         this.accessModifierAnnotations = accessModifierAnnotations;
     }
 
+    public boolean isAppendableOverloads() {
+        return appendableOverloads;
+    }
+
+    public void setAppendableOverloads(boolean appendableOverloads) {
+        this.appendableOverloads = appendableOverloads;
+    }
+
+    public boolean isEmbedDefaults() {
+        return embedDefaults;
+    }
+
+    public void setEmbedDefaults(boolean embedDefaults) {
+        this.embedDefaults = embedDefaults;
+    }
+
+    public boolean isKeyOrdinals() {
+        return keyOrdinals;
+    }
+
+    public void setKeyOrdinals(boolean keyOrdinals) {
+        this.keyOrdinals = keyOrdinals;
+    }
+
     public File getOutputDirectory() {
         return outputDirectory;
     }
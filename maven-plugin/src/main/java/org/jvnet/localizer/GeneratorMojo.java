@@ -120,6 +120,58 @@ public class GeneratorMojo extends AbstractMojo {
      */
     protected boolean accessModifierAnnotations;
 
+    /**
+     * Whether to also generate an overload of each message method that takes an {@link Appendable}
+     * as the first parameter, and writes the formatted message there instead of returning a String.
+     *
+     * @parameter
+     */
+    protected boolean appendableOverloads;
+
+    /**
+     * Whether to compile the messages of the default property file into the generated classes,
+     * so that the runtime doesn't need to load the default property file. Translations are loaded as usual.
+     *
+     * @parameter
+     */
+    protected boolean embedDefaults;
+
+    /**
+     * Whether to number the keys of each property file in the generated classes,
+     * so that messages are looked up by an array index instead of by the key.
+     *
+     * @parameter
+     */
+    protected boolean keyOrdinals;
+
+    /**
+     * Whether to list the generated classes in {@code META-INF/localizer/holders},
+     * so that they can be found at runtime with {@code ResourceBundleHolder.findHolderClasses(ClassLoader)},
+     * for example to preload them.
+     *
+     * @parameter
+     */
+    protected boolean holderIndex;
+
+    /**
+     * Whether to pack all the property files and their translations into {@code META-INF/localizer/bundles.bin},
+     * from which the runtime loads them without a class loader lookup per bundle.
+     * The individual property files are still packaged, for other tools and for custom {@code ResourceProvider}s.
+     * Note that the archived files win over loose files of the same name, even those earlier in the class path,
+     * while translations that aren't archived, for example those in another jar, are still found.
+     *
+     * @parameter
+     */
+    protected boolean bundleArchive;
+
+    /**
+     * The directory the holder index and the bundle archive are written to.
+     *
+     * @parameter default-value="${project.build.outputDirectory}"
+     * @readonly
+     */
+    protected File classesDirectory;
+
     @SuppressWarnings("unchecked")
     public void execute() throws MojoExecutionException, MojoFailureException {
         String pkg = project.getPackaging();
@@ -132,6 +184,9 @@ public class GeneratorMojo extends AbstractMojo {
                         getLog().debug(msg);
                     }
                 }, keyPattern, strictTypes, accessModifierAnnotations);
+        config.setAppendableOverloads(appendableOverloads);
+        config.setEmbedDefaults(embedDefaults);
+        config.setKeyOrdinals(keyOrdinals);
         ClassGenerator g = createGenerator(config);
 
         for(Resource res : (List<Resource>)project.getResources()) {
@@ -183,6 +238,28 @@ public class GeneratorMojo extends AbstractMojo {
             throw new MojoExecutionException("Failed to generate source file(s)",e);
         }
 
+        if (holderIndex) {
+            if (!(g instanceof GeneratorBase))
+                throw new MojoExecutionException("generatorClass \"" + generatorClass
+                        + "\" doesn't support holderIndex.");
+            try {
+                ((GeneratorBase)g).writeHolderIndex(classesDirectory);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Failed to write the holder index",e);
+            }
+        }
+
+        if (bundleArchive) {
+            if (!(g instanceof GeneratorBase))
+                throw new MojoExecutionException("generatorClass \"" + generatorClass
+                        + "\" doesn't support bundleArchive.");
+            try {
+                ((GeneratorBase)g).writeBundleArchive(classesDirectory);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Failed to write the bundle archive",e);
+            }
+        }
+
         project.addCompileSourceRoot(outputDirectory.getAbsolutePath());
     }
 
@@ -15,4 +15,11 @@ public class LocalizerPluginIT {
         // the project itself has a test that will fail if the Messages are not generated
         assertTrue(result.isSuccesful());
     }
+
+    @MavenTest
+    void generatorOptions(MavenExecutionResult result) {
+        // the project turns on appendableOverloads, keyOrdinals, holderIndex and bundleArchive,
+        // and has tests that use the generated code and resources
+        assertTrue(result.isSuccesful());
+    }
 }
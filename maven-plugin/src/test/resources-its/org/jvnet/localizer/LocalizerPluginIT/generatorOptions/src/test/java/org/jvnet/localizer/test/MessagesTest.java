@@ -0,0 +1,69 @@
+package org.jvnet.localizer.test;
+
+import org.junit.Test;
+
+import org.junit.Assert;
+import org.jvnet.localizer.LocaleProvider;
+import org.jvnet.localizer.ResourceBundleHolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+public class MessagesTest {
+
+    @Test
+    public void keyOrdinals() throws Exception {
+        Assert.assertEquals("Test message one and two", LocaleProvider.callWith(Locale.ROOT, new Callable<String>() {
+            public String call() {
+                return Messages.abc("one", "two");
+            }
+        }));
+        Assert.assertEquals("Testnachricht one und two", LocaleProvider.callWith(Locale.GERMANY, new Callable<String>() {
+            public String call() {
+                return Messages.abc("one", "two");
+            }
+        }));
+        Assert.assertEquals("*/*", Messages._ghi().toString(Locale.ROOT));
+    }
+
+    @Test
+    public void appendableOverloads() throws Exception {
+        final StringBuilder buf = new StringBuilder();
+        LocaleProvider.callWith(Locale.ROOT, new Callable<Void>() {
+            public Void call() throws Exception {
+                Messages.abc(buf, "one", "two");
+                buf.append('|');
+                Messages.def(buf, 3);
+                return null;
+            }
+        });
+        Assert.assertEquals("Test message one and two|Another message 3", buf.toString());
+    }
+
+    @Test
+    public void holderIndex() throws Exception {
+        Assert.assertTrue(ResourceBundleHolder.findHolderClasses(getClass().getClassLoader()).contains(Messages.class));
+    }
+
+    @Test
+    public void bundleArchive() throws Exception {
+        InputStream in = getClass().getClassLoader().getResourceAsStream("META-INF/localizer/bundles.bin");
+        Assert.assertNotNull(in);
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try {
+            byte[] b = new byte[8192];
+            int n;
+            while ((n=in.read(b))>=0)
+                buf.write(b, 0, n);
+        } finally {
+            in.close();
+        }
+        // the file names are in the index at the head of the archive, along with the translations
+        String archive = new String(buf.toByteArray(), "ISO-8859-1");
+        Assert.assertTrue(archive.contains("org/jvnet/localizer/test/Messages.properties"));
+        Assert.assertTrue(archive.contains("org/jvnet/localizer/test/Messages_de.properties"));
+        Assert.assertTrue(archive.contains("Testnachricht {0} und {1}"));
+    }
+}